@@ -4,15 +4,17 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.view.animation.Animation;
+import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.core.view.ViewCompat;
 import androidx.databinding.BindingAdapter;
 
+import org.mediasoup.droid.demo.view.RendererPool;
 import org.mediasoup.droid.demo.vm.MeProps;
 import org.mediasoup.droid.lib.RoomClient;
 import org.mediasoup.droid.lib.model.DeviceInfo;
-import org.webrtc.SurfaceViewRenderer;
 import org.webrtc.VideoTrack;
 
 public class BindingAdapters {
@@ -191,15 +193,17 @@ public class BindingAdapters {
     }
   }
 
-  @BindingAdapter({"edias_render"})
-  public static void render(SurfaceViewRenderer renderer, VideoTrack track) {
+  @BindingAdapter({"edias_render", "edias_render_overlay", "edias_render_speaker"})
+  public static void render(
+      FrameLayout container, VideoTrack track, boolean mediaOverlay, Boolean activeSpeaker) {
     Log.d(TAG, "edias_render: " + (track != null));
-    if (track != null) {
-      track.addSink(renderer);
-      renderer.setVisibility(View.VISIBLE);
-    } else {
-      renderer.setVisibility(View.GONE);
-    }
+    // Only hold a renderer while in a window, see PeerView/MeView onAttachedToWindow.
+    RendererPool.render(
+        container,
+        ViewCompat.isAttachedToWindow(container) ? track : null,
+        mediaOverlay,
+        Boolean.TRUE.equals(activeSpeaker));
+    container.setVisibility(track != null ? View.VISIBLE : View.GONE);
   }
 
   @BindingAdapter({"edias_render_empty"})
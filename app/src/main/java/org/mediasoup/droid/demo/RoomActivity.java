@@ -18,7 +18,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.databinding.DataBindingUtil;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProviders;
-import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.nabinbhandari.android.permissions.PermissionHandler;
 import com.nabinbhandari.android.permissions.Permissions;
@@ -26,7 +26,11 @@ import com.nabinbhandari.android.permissions.Permissions;
 import org.mediasoup.droid.Logger;
 import org.mediasoup.droid.MediasoupClient;
 import org.mediasoup.droid.demo.adapter.PeerAdapter;
+import org.mediasoup.droid.demo.adapter.PageSnapHelper;
+import org.mediasoup.droid.demo.adapter.PeerViewportTracker;
+import org.mediasoup.droid.demo.adapter.SpeakerLayoutManager;
 import org.mediasoup.droid.demo.databinding.ActivityRoomBinding;
+import org.mediasoup.droid.demo.view.RendererPool;
 import org.mediasoup.droid.demo.vm.EdiasProps;
 import org.mediasoup.droid.demo.vm.MeProps;
 import org.mediasoup.droid.demo.vm.RoomProps;
@@ -50,6 +54,8 @@ public class RoomActivity extends AppCompatActivity {
 
   private String mRoomId, mPeerId, mDisplayName;
   private boolean mForceH264, mForceVP9;
+  // Paged grid of the remote tiles, 0 for a scrolling list.
+  private int mPageRows, mPageColumns;
 
   private RoomOptions mOptions;
   private RoomStore mRoomStore;
@@ -57,12 +63,16 @@ public class RoomActivity extends AppCompatActivity {
 
   private ActivityRoomBinding mBinding;
   private PeerAdapter mPeerAdapter;
+  private PeerViewportTracker mPeerViewportTracker;
+  private PageSnapHelper mPageSnapHelper;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     mBinding = DataBindingUtil.setContentView(this, R.layout.activity_room);
     createRoom();
+    // Me plus the remote tiles fitting on screen.
+    RendererPool.prewarm(this, 1 + Math.max(4, mPageRows * mPageColumns));
     checkPermission();
   }
 
@@ -107,6 +117,13 @@ public class RoomActivity extends AppCompatActivity {
     // Device config.
     String camera = preferences.getString("camera", "front");
     PeerConnectionUtils.setPreferCameraFace(camera);
+    String[] pageGrid = preferences.getString("pageGrid", "off").split("x");
+    if (pageGrid.length == 2) {
+      mPageRows = Integer.parseInt(pageGrid[0]);
+      mPageColumns = Integer.parseInt(pageGrid[1]);
+    } else {
+      mPageRows = mPageColumns = 0;
+    }
 
     // Display version number.
     ((TextView)findViewById(R.id.version)).setText(String.valueOf(MediasoupClient.version()));
@@ -162,8 +179,20 @@ public class RoomActivity extends AppCompatActivity {
 
     // Peers.
     mPeerAdapter = new PeerAdapter(mRoomStore, this, mRoomClient);
-    mBinding.remotePeers.setLayoutManager(new LinearLayoutManager(this));
+    mPeerAdapter.setPageGrid(mPageRows, mPageColumns);
+    if (mPeerAdapter.isPaged()) {
+      mBinding.remotePeers.setLayoutManager(
+          new GridLayoutManager(this, mPeerAdapter.getPageColumns()));
+      // Keep the tiles of the page just left bound, swiping back only reattaches them.
+      mBinding.remotePeers.setItemViewCacheSize(mPeerAdapter.getPageSize());
+      mPageSnapHelper = new PageSnapHelper(mPeerAdapter);
+      mPageSnapHelper.attachToRecyclerView(mBinding.remotePeers);
+    } else {
+      mBinding.remotePeers.setLayoutManager(new SpeakerLayoutManager(this, mPeerAdapter));
+    }
     mBinding.remotePeers.setAdapter(mPeerAdapter);
+    mPeerViewportTracker = new PeerViewportTracker(mRoomClient, mPeerAdapter);
+    mPeerViewportTracker.attach(mBinding.remotePeers);
     mRoomStore
         .getPeers()
         .observe(
@@ -179,6 +208,9 @@ public class RoomActivity extends AppCompatActivity {
               }
               mPeerAdapter.replacePeers(peersList);
             });
+    mRoomStore
+        .getRoomInfo()
+        .observe(this, roomInfo -> mPeerAdapter.setActiveSpeakerId(roomInfo.getActiveSpeakerId()));
 
     // Notify
     final Observer<Notify> notifyObserver =
@@ -223,6 +255,14 @@ public class RoomActivity extends AppCompatActivity {
   }
 
   private void destroyRoom() {
+    if (mPeerViewportTracker != null) {
+      mPeerViewportTracker.detach();
+      mPeerViewportTracker = null;
+    }
+    if (mPageSnapHelper != null) {
+      mPageSnapHelper.attachToRecyclerView(null);
+      mPageSnapHelper = null;
+    }
     if (mRoomClient != null) {
       mRoomClient.close();
       mRoomClient = null;
@@ -269,5 +309,8 @@ public class RoomActivity extends AppCompatActivity {
   protected void onDestroy() {
     super.onDestroy();
     destroyRoom();
+    // Give the tile renderers back before releasing the pool, the window detaches the rest later.
+    mBinding.remotePeers.setAdapter(null);
+    RendererPool.clear();
   }
 }
@@ -0,0 +1,75 @@
+package org.mediasoup.droid.demo.adapter;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.OrientationHelper;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.SnapHelper;
+
+/**
+ * Snaps a vertical grid of peer tiles to whole pages, a fling moving by one page at most.
+ *
+ * <p>Expects the tiles of a page to fill the RecyclerView height, see {@link
+ * PeerAdapter#setPageGrid}.
+ */
+public class PageSnapHelper extends SnapHelper {
+
+  @NonNull private final PeerAdapter mAdapter;
+
+  public PageSnapHelper(@NonNull PeerAdapter adapter) {
+    mAdapter = adapter;
+  }
+
+  @Override
+  public int[] calculateDistanceToFinalSnap(
+      @NonNull RecyclerView.LayoutManager layoutManager, @NonNull View targetView) {
+    OrientationHelper helper = OrientationHelper.createVerticalHelper(layoutManager);
+    return new int[] {0, helper.getDecoratedStart(targetView) - helper.getStartAfterPadding()};
+  }
+
+  @Nullable
+  @Override
+  public View findSnapView(RecyclerView.LayoutManager layoutManager) {
+    int first = findFirstVisiblePosition(layoutManager);
+    if (first == RecyclerView.NO_POSITION) {
+      return null;
+    }
+    // First tile of the page covering most of the viewport.
+    int pageStart = first - first % mAdapter.getPageSize();
+    View view = layoutManager.findViewByPosition(pageStart);
+    View next = layoutManager.findViewByPosition(pageStart + mAdapter.getPageSize());
+    if (view == null || next == null) {
+      return view != null ? view : next;
+    }
+    OrientationHelper helper = OrientationHelper.createVerticalHelper(layoutManager);
+    int start = helper.getStartAfterPadding();
+    int nextDistance = helper.getDecoratedStart(next) - start;
+    return nextDistance < start - helper.getDecoratedStart(view) ? next : view;
+  }
+
+  @Override
+  public int findTargetSnapPosition(
+      RecyclerView.LayoutManager layoutManager, int velocityX, int velocityY) {
+    int first = findFirstVisiblePosition(layoutManager);
+    if (first == RecyclerView.NO_POSITION) {
+      return RecyclerView.NO_POSITION;
+    }
+    // The page at the top is the one left when flinging down, the one entered when flinging up.
+    int pageSize = mAdapter.getPageSize();
+    int pageStart = first - first % pageSize;
+    if (velocityY > 0 && pageStart + pageSize < layoutManager.getItemCount()) {
+      return pageStart + pageSize;
+    }
+    return pageStart;
+  }
+
+  private int findFirstVisiblePosition(RecyclerView.LayoutManager layoutManager) {
+    if (!(layoutManager instanceof LinearLayoutManager) || !mAdapter.isPaged()) {
+      return RecyclerView.NO_POSITION;
+    }
+    return ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition();
+  }
+}
@@ -6,8 +6,11 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import org.mediasoup.droid.Logger;
@@ -18,8 +21,10 @@ import org.mediasoup.droid.lib.RoomClient;
 import org.mediasoup.droid.lib.lv.RoomStore;
 import org.mediasoup.droid.lib.model.Peer;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder> {
 
@@ -29,7 +34,37 @@ public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder
   @NonNull private LifecycleOwner mLifecycleOwner;
   @NonNull private RoomClient mRoomClient;
 
-  private List<Peer> mPeers = new LinkedList<>();
+  // Rebind payload that only updates the tile height.
+  private static final Object PAYLOAD_HEIGHT = new Object();
+
+  private static final DiffUtil.ItemCallback<Peer> DIFF_CALLBACK =
+      new DiffUtil.ItemCallback<Peer>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Peer oldItem, @NonNull Peer newItem) {
+          return oldItem.getId().equals(newItem.getId());
+        }
+
+        // Always true on purpose: each tile observes its own peer through PeerProps, which
+        // follows RoomStore#getPeer, so a new Peer snapshot (rename, Consumer added or removed)
+        // already reaches the tile. Reporting a change would only rebind and animate the tile.
+        @Override
+        public boolean areContentsTheSame(@NonNull Peer oldItem, @NonNull Peer newItem) {
+          return true;
+        }
+      };
+
+  // Diffs peer lists off the main thread and dispatches item level changes.
+  private final AsyncListDiffer<Peer> mDiffer = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+  // Stable item ids by peer id, of the peers in the current list only.
+  private final Map<String, Long> mItemIds = new HashMap<>();
+  private long mNextItemId;
+
+  // Peers in store order, before promoting the active speaker.
+  @NonNull private List<Peer> mPeers = new ArrayList<>();
+  @Nullable private String mActiveSpeakerId;
+  // Paged grid size, 0 when tiles scroll as one list.
+  private int mPageRows;
+  private int mPageColumns;
 
   private int containerHeight;
 
@@ -40,11 +75,124 @@ public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder
     mStore = store;
     mLifecycleOwner = lifecycleOwner;
     mRoomClient = roomClient;
+    setHasStableIds(true);
   }
 
   public void replacePeers(@NonNull List<Peer> peers) {
     mPeers = peers;
-    notifyDataSetChanged();
+    if (mActiveSpeakerId != null && !containsPeer(peers, mActiveSpeakerId)) {
+      // The promoted speaker left.
+      mActiveSpeakerId = null;
+    }
+    submitPeers();
+  }
+
+  private static boolean containsPeer(@NonNull List<Peer> peers, @NonNull String peerId) {
+    for (Peer peer : peers) {
+      if (peer.getId().equals(peerId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Show the tiles as pages of {@code rows} by {@code columns} filling the RecyclerView, 0 for a
+   * single list. Paged tiles keep the store order, the active speaker is not promoted. Call before
+   * the first peers are submitted.
+   */
+  public void setPageGrid(int rows, int columns) {
+    mPageRows = Math.max(rows, 0);
+    mPageColumns = Math.max(columns, 0);
+  }
+
+  public boolean isPaged() {
+    return mPageRows > 0 && mPageColumns > 0;
+  }
+
+  /** Tiles per page, 0 when not paged. */
+  public int getPageSize() {
+    return isPaged() ? mPageRows * mPageColumns : 0;
+  }
+
+  public int getPageColumns() {
+    return mPageColumns;
+  }
+
+  /**
+   * Promote the tile of {@code peerId} to the top, as a large one. The server reports a null
+   * speaker on silence, which keeps the last one promoted until another speaks or it leaves.
+   */
+  public void setActiveSpeakerId(@Nullable String peerId) {
+    if (peerId == null || peerId.equals(mActiveSpeakerId)) {
+      return;
+    }
+    mActiveSpeakerId = peerId;
+    submitPeers();
+  }
+
+  private void submitPeers() {
+    List<Peer> peers = new ArrayList<>(mPeers.size());
+    for (Peer peer : mPeers) {
+      if (!isPaged() && peer.getId().equals(mActiveSpeakerId)) {
+        peers.add(0, peer);
+      } else {
+        peers.add(peer);
+      }
+    }
+    mDiffer.submitList(
+        peers,
+        () -> {
+          pruneItemIds();
+          // Tile sizes depend on the peer count and on the promoted tile, resize them all.
+          notifyItemRangeChanged(0, getItemCount(), PAYLOAD_HEIGHT);
+        });
+  }
+
+  // Forget the ids of the peers gone, once the list without them is the current one.
+  private void pruneItemIds() {
+    Map<String, Long> itemIds = new HashMap<>();
+    for (Peer peer : mDiffer.getCurrentList()) {
+      Long itemId = mItemIds.get(peer.getId());
+      if (itemId != null) {
+        itemIds.put(peer.getId(), itemId);
+      }
+    }
+    mItemIds.clear();
+    mItemIds.putAll(itemIds);
+  }
+
+  /** Whether the tile at {@code position} is the promoted active speaker. */
+  public boolean isPromoted(int position) {
+    return position == 0
+        && !isPaged()
+        && getItemCount() > 1
+        && getPeer(0).getId().equals(mActiveSpeakerId);
+  }
+
+  /**
+   * Columns taken by the tile at {@code position} in a {@link SpeakerLayoutManager} row. Without a
+   * promoted speaker every tile takes a full row, as in a plain list.
+   */
+  int getSpanSize(int position) {
+    if (isPaged()) {
+      return 1;
+    }
+    if (!isPromoted(0) || position == 0 || getItemCount() <= 3) {
+      return SpeakerLayoutManager.SPAN_COUNT;
+    }
+    return 1;
+  }
+
+  @Override
+  public long getItemId(int position) {
+    String peerId = mDiffer.getCurrentList().get(position).getId();
+    Long itemId = mItemIds.get(peerId);
+    if (itemId == null) {
+      itemId = mNextItemId++;
+      mItemIds.put(peerId, itemId);
+    }
+    return itemId;
   }
 
   @NonNull
@@ -57,29 +205,83 @@ public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder
         view, new PeerProps(((AppCompatActivity) context).getApplication(), mStore));
   }
 
+  @Override
+  public void onBindViewHolder(
+      @NonNull PeerViewHolder holder, int position, @NonNull List<Object> payloads) {
+    if (!payloads.isEmpty() && isHeightOnly(payloads)) {
+      updateHeight(holder, position);
+      return;
+    }
+    super.onBindViewHolder(holder, position, payloads);
+  }
+
   @Override
   public void onBindViewHolder(@NonNull PeerViewHolder holder, int position) {
-    // update height
-    ViewGroup.LayoutParams layoutParams = holder.mPeerView.getLayoutParams();
-    layoutParams.height = getItemHeight();
-    holder.mPeerView.setLayoutParams(layoutParams);
     // bind
-    holder.bind(mLifecycleOwner, mRoomClient, mPeers.get(position));
+    holder.bind(mLifecycleOwner, mRoomClient, mDiffer.getCurrentList().get(position));
+    updateHeight(holder, position);
+  }
+
+  private static boolean isHeightOnly(@NonNull List<Object> payloads) {
+    for (Object payload : payloads) {
+      if (payload != PAYLOAD_HEIGHT) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void updateHeight(@NonNull PeerViewHolder holder, int position) {
+    int itemHeight = getItemHeight(position);
+    ViewGroup.LayoutParams layoutParams = holder.mPeerView.getLayoutParams();
+    if (layoutParams.height != itemHeight) {
+      layoutParams.height = itemHeight;
+      holder.mPeerView.setLayoutParams(layoutParams);
+    }
+    // Let the RoomClient pick the video layers worth receiving for this tile size.
+    if (holder.mPeerId != null && itemHeight > 0) {
+      mRoomClient.setPeerVideoHeight(holder.mPeerId, itemHeight);
+    }
+  }
+
+  @Override
+  public void onViewRecycled(@NonNull PeerViewHolder holder) {
+    // The next bind of this holder always connects, even to the same peer id.
+    holder.unbind();
+  }
+
+  @NonNull
+  public Peer getPeer(int position) {
+    return mDiffer.getCurrentList().get(position);
   }
 
   @Override
   public int getItemCount() {
-    return mPeers.size();
+    return mDiffer.getCurrentList().size();
   }
 
-  private int getItemHeight() {
+  // Without a promoted speaker, one tile per row sharing the container up to 3 tiles, rows of
+  // 1/3.2 of it beyond. The promoted speaker takes the top half, the others share the rest: one
+  // per row up to 3 tiles, two per row beyond. Paged, the rows of a page share the container
+  // height exactly so no sliver of the next page shows.
+  private int getItemHeight(int position) {
+    if (isPaged()) {
+      int row = position % getPageSize() / mPageColumns;
+      return containerHeight * (row + 1) / mPageRows - containerHeight * row / mPageRows;
+    }
     int itemCount = getItemCount();
     if (itemCount <= 1) {
       return containerHeight;
-    } else if (itemCount <= 3) {
-      return containerHeight / itemCount;
+    }
+    boolean promoted = isPromoted(0);
+    if (promoted && position == 0) {
+      return containerHeight / 2;
+    }
+    int height = promoted ? containerHeight - containerHeight / 2 : containerHeight;
+    if (itemCount <= 3) {
+      return height / (promoted ? itemCount - 1 : itemCount);
     } else {
-      return (int) (containerHeight / 3.2);
+      return (int) (height / (promoted ? 2 : 3.2));
     }
   }
 
@@ -87,6 +289,8 @@ public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder
 
     @NonNull final PeerView mPeerView;
     @NonNull final PeerProps mPeerProps;
+    // Peer currently bound, null once recycled.
+    private String mPeerId;
 
     PeerViewHolder(@NonNull View view, @NonNull PeerProps peerProps) {
       super(view);
@@ -95,9 +299,20 @@ public class PeerAdapter extends RecyclerView.Adapter<PeerAdapter.PeerViewHolder
     }
 
     void bind(LifecycleOwner owner, RoomClient roomClient, @NonNull Peer peer) {
+      // Skip only if still following the store's current LiveData of this peer: the ones of a
+      // peer that left are dropped, and it may join again with the same id.
+      if (mPeerProps.isConnectedTo(peer.getId())) {
+        return;
+      }
       Logger.d(TAG, "bind() id: " + peer.getId() + ", name: " + peer.getDisplayName());
+      mPeerId = peer.getId();
       mPeerProps.connect(owner, peer.getId());
       mPeerView.setProps(mPeerProps, roomClient);
     }
+
+    void unbind() {
+      mPeerId = null;
+      mPeerProps.disconnect();
+    }
   }
 }
@@ -0,0 +1,200 @@
+package org.mediasoup.droid.demo.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.mediasoup.droid.lib.RoomClient;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells the RoomClient which peer tiles are on screen, so video of the others can be paused.
+ *
+ * <p>Tiles within {@link #MARGIN_ITEMS} of the viewport count as visible so a short scroll does
+ * not show a frozen frame, and a tile has to stay out for {@link #HIDE_DELAY_MS} before its video
+ * is paused so scrolling back and forth does not flap the Consumers.
+ *
+ * <p>With a paged grid only the current page is visible once scrolling stops, and the pages the
+ * viewport touches while scrolling are resumed as a whole, so the next page's video is starting
+ * by the time it snaps in. Main thread only.
+ */
+public class PeerViewportTracker extends RecyclerView.OnScrollListener
+    implements View.OnLayoutChangeListener {
+
+  // Tiles around the viewport still considered visible.
+  private static final int MARGIN_ITEMS = 1;
+  // How long a tile stays out of the viewport before its video is paused.
+  private static final long HIDE_DELAY_MS = 2000;
+
+  @NonNull private final RoomClient mRoomClient;
+  @NonNull private final PeerAdapter mAdapter;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final Runnable mUpdate = this::update;
+  private final RecyclerView.AdapterDataObserver mDataObserver =
+      new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+          scheduleUpdate();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+          scheduleUpdate();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+          scheduleUpdate();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+          scheduleUpdate();
+        }
+      };
+
+  private RecyclerView mRecyclerView;
+  // Peers whose video was reported hidden.
+  private final Set<String> mHiddenPeerIds = new HashSet<>();
+  // Peers out of the viewport but not hidden yet, with the uptime they left it.
+  private final Map<String, Long> mLeftAt = new HashMap<>();
+
+  public PeerViewportTracker(@NonNull RoomClient roomClient, @NonNull PeerAdapter adapter) {
+    mRoomClient = roomClient;
+    mAdapter = adapter;
+  }
+
+  public void attach(@NonNull RecyclerView recyclerView) {
+    detach();
+    mRecyclerView = recyclerView;
+    recyclerView.addOnScrollListener(this);
+    recyclerView.addOnLayoutChangeListener(this);
+    mAdapter.registerAdapterDataObserver(mDataObserver);
+    scheduleUpdate();
+  }
+
+  public void detach() {
+    if (mRecyclerView == null) {
+      return;
+    }
+    mRecyclerView.removeOnScrollListener(this);
+    mRecyclerView.removeOnLayoutChangeListener(this);
+    mAdapter.unregisterAdapterDataObserver(mDataObserver);
+    mRecyclerView = null;
+    mMainHandler.removeCallbacks(mUpdate);
+    mHiddenPeerIds.clear();
+    mLeftAt.clear();
+  }
+
+  @Override
+  public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+    scheduleUpdate();
+  }
+
+  @Override
+  public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+    scheduleUpdate();
+  }
+
+  @Override
+  public void onLayoutChange(
+      View v,
+      int left,
+      int top,
+      int right,
+      int bottom,
+      int oldLeft,
+      int oldTop,
+      int oldRight,
+      int oldBottom) {
+    scheduleUpdate();
+  }
+
+  // Coalesce the scroll, layout and data callbacks of a frame into one pass.
+  private void scheduleUpdate() {
+    mMainHandler.removeCallbacks(mUpdate);
+    mMainHandler.post(mUpdate);
+  }
+
+  private void update() {
+    if (mRecyclerView == null
+        || !(mRecyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+      return;
+    }
+    LinearLayoutManager layoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
+    int first = layoutManager.findFirstVisibleItemPosition();
+    int last = layoutManager.findLastVisibleItemPosition();
+    if (first == RecyclerView.NO_POSITION) {
+      // Not laid out yet, keep everything as is.
+      return;
+    }
+    int margin = MARGIN_ITEMS;
+    if (mAdapter.isPaged()) {
+      int pageSize = mAdapter.getPageSize();
+      // Snapped, only the whole tiles count: the page, or two at the end of a partial last page.
+      if (mRecyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE
+          && layoutManager.findFirstCompletelyVisibleItemPosition() != RecyclerView.NO_POSITION) {
+        first = layoutManager.findFirstCompletelyVisibleItemPosition();
+        last = layoutManager.findLastCompletelyVisibleItemPosition();
+      }
+      first -= first % pageSize;
+      last += pageSize - 1 - last % pageSize;
+      margin = 0;
+    }
+
+    long now = SystemClock.uptimeMillis();
+    long nextHideDelay = -1;
+    Set<String> peerIds = new HashSet<>();
+    for (int position = 0; position < mAdapter.getItemCount(); position++) {
+      String peerId = mAdapter.getPeer(position).getId();
+      peerIds.add(peerId);
+      if (position >= first - margin && position <= last + margin) {
+        mLeftAt.remove(peerId);
+        if (mHiddenPeerIds.remove(peerId)) {
+          mRoomClient.setPeerVideoVisible(peerId, true);
+        }
+        continue;
+      }
+      if (mHiddenPeerIds.contains(peerId)) {
+        continue;
+      }
+      Long leftAt = mLeftAt.get(peerId);
+      if (leftAt == null) {
+        leftAt = now;
+        mLeftAt.put(peerId, now);
+      }
+      long remaining = leftAt + HIDE_DELAY_MS - now;
+      if (remaining <= 0) {
+        mLeftAt.remove(peerId);
+        mHiddenPeerIds.add(peerId);
+        mRoomClient.setPeerVideoVisible(peerId, false);
+      } else if (nextHideDelay == -1 || remaining < nextHideDelay) {
+        nextHideDelay = remaining;
+      }
+    }
+
+    // Forget peers which left the room, and let the RoomClient forget them too.
+    for (Iterator<String> it = mHiddenPeerIds.iterator(); it.hasNext(); ) {
+      String peerId = it.next();
+      if (!peerIds.contains(peerId)) {
+        it.remove();
+        mRoomClient.setPeerVideoVisible(peerId, true);
+      }
+    }
+    mLeftAt.keySet().retainAll(peerIds);
+
+    if (nextHideDelay != -1) {
+      mMainHandler.postDelayed(mUpdate, nextHideDelay);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package org.mediasoup.droid.demo.adapter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+
+/**
+ * Lays out the peer tiles with the active speaker promoted to a full width tile on top.
+ *
+ * <p>Without a promoted speaker, or up to 3 peers, every tile takes a full row like in a plain
+ * list. Beyond that the tiles under the speaker go two per row. Tile heights are set by {@link
+ * PeerAdapter}, which also moves the speaker first.
+ */
+public class SpeakerLayoutManager extends GridLayoutManager {
+
+  static final int SPAN_COUNT = 2;
+
+  public SpeakerLayoutManager(@NonNull Context context, @NonNull PeerAdapter adapter) {
+    super(context, SPAN_COUNT);
+    setSpanSizeLookup(
+        new SpanSizeLookup() {
+          @Override
+          public int getSpanSize(int position) {
+            return adapter.getSpanSize(position);
+          }
+        });
+  }
+}
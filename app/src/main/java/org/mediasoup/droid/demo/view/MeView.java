@@ -15,7 +15,6 @@ import androidx.databinding.DataBindingUtil;
 import org.mediasoup.droid.demo.R;
 import org.mediasoup.droid.demo.databinding.ViewMeBindingImpl;
 import org.mediasoup.droid.demo.vm.MeProps;
-import org.mediasoup.droid.lib.PeerConnectionUtils;
 import org.mediasoup.droid.lib.RoomClient;
 
 public class MeView extends RelativeLayout {
@@ -46,7 +45,20 @@ public class MeView extends RelativeLayout {
 
   private void init(Context context) {
     mBinding = DataBindingUtil.inflate(LayoutInflater.from(context), R.layout.view_me, this, true);
-    mBinding.peerView.videoRenderer.init(PeerConnectionUtils.getEglContext(), null);
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    // Re-run edias_render so a renderer shows the current track again.
+    mBinding.peerView.invalidateAll();
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    // Recycled, scrolled away or destroyed, give the renderer back.
+    RendererPool.release(mBinding.peerView.videoContainer);
+    super.onDetachedFromWindow();
   }
 
   public void setProps(MeProps props, final RoomClient roomClient) {
@@ -74,8 +86,6 @@ public class MeView extends RelativeLayout {
           // TODO(HaiyangWU): Handle inner click event;
         });
 
-    mBinding.peerView.videoRenderer.setZOrderMediaOverlay(true);
-
     // set view model.
     mBinding.setMeProps(props);
 
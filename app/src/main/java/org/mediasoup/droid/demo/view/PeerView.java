@@ -14,7 +14,6 @@ import androidx.databinding.DataBindingUtil;
 import org.mediasoup.droid.demo.R;
 import org.mediasoup.droid.demo.databinding.ViewPeerBinding;
 import org.mediasoup.droid.demo.vm.PeerProps;
-import org.mediasoup.droid.lib.PeerConnectionUtils;
 import org.mediasoup.droid.lib.RoomClient;
 
 public class PeerView extends RelativeLayout {
@@ -46,7 +45,20 @@ public class PeerView extends RelativeLayout {
   private void init(Context context) {
     mBinding =
         DataBindingUtil.inflate(LayoutInflater.from(context), R.layout.view_peer, this, true);
-    mBinding.peerView.videoRenderer.init(PeerConnectionUtils.getEglContext(), null);
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    // Re-run edias_render so a renderer shows the current track again.
+    mBinding.peerView.invalidateAll();
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    // Recycled, scrolled away or destroyed, give the renderer back.
+    RendererPool.release(mBinding.peerView.videoContainer);
+    super.onDetachedFromWindow();
   }
 
   public void setProps(PeerProps props, RoomClient roomClient) {
@@ -0,0 +1,160 @@
+package org.mediasoup.droid.demo.view;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.mediasoup.droid.Logger;
+import org.mediasoup.droid.lib.PeerConnectionUtils;
+import org.webrtc.EglBase;
+import org.webrtc.SurfaceViewRenderer;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Initialized SurfaceViewRenderers shared by the video tiles.
+ *
+ * <p>A tile borrows a renderer while it shows a track and gives it back when the track goes away or
+ * the tile leaves the window, so binds do not set up a renderer and its EGL context each time.
+ * Renderers are created with the application context and all initialized on the EGL context of
+ * PeerConnectionUtils, which lives as long as the process. Main thread only.
+ */
+public final class RendererPool {
+
+  private static final String TAG = "RendererPool";
+
+  // Idle renderers kept beyond this are released.
+  private static final int MAX_IDLE = 6;
+
+  private static final ArrayDeque<SurfaceViewRenderer> sIdle = new ArrayDeque<>();
+  // Frame rate limiting sink in front of each renderer, idle or borrowed.
+  private static final Map<SurfaceViewRenderer, ThrottledVideoSink> sSinks = new HashMap<>();
+  // Shared EGL context, fetched once: getEglContext() returns a new wrapper on each call.
+  @Nullable private static EglBase.Context sEglContext;
+  // Set by clear() until the pool is used again: renderers given back meanwhile, by the tiles
+  // detaching after onDestroy(), are released instead of kept idle.
+  private static boolean sDraining;
+
+  private RendererPool() {}
+
+  /** Create idle renderers up to {@code count}, one per main thread idle pass. */
+  @MainThread
+  public static void prewarm(@NonNull Context context, int count) {
+    sDraining = false;
+    Context appContext = context.getApplicationContext();
+    Looper.myQueue()
+        .addIdleHandler(
+            () -> {
+              if (sIdle.size() >= Math.min(count, MAX_IDLE)) {
+                return false;
+              }
+              sIdle.push(create(appContext));
+              return sIdle.size() < Math.min(count, MAX_IDLE);
+            });
+  }
+
+  /**
+   * Show {@code track} in {@code container}, borrowing a renderer if it has none, or give its
+   * renderer back if the track is null. {@code mediaOverlay} puts the renderer above the others,
+   * for the local preview. The active speaker renders at full frame rate whatever its tile size.
+   */
+  @MainThread
+  public static void render(
+      @NonNull FrameLayout container,
+      @Nullable VideoTrack track,
+      boolean mediaOverlay,
+      boolean activeSpeaker) {
+    SurfaceViewRenderer renderer = getRenderer(container);
+    if (track == null) {
+      if (renderer != null) {
+        recycle(container, renderer);
+      }
+      return;
+    }
+    if (renderer == null) {
+      renderer = acquire(container.getContext());
+      // Must be set before the surface gets attached.
+      renderer.setZOrderMediaOverlay(mediaOverlay);
+      container.addView(
+          renderer,
+          new FrameLayout.LayoutParams(
+              ViewGroup.LayoutParams.WRAP_CONTENT,
+              ViewGroup.LayoutParams.WRAP_CONTENT,
+              Gravity.CENTER));
+    }
+    ThrottledVideoSink sink = sSinks.get(renderer);
+    sink.setHeight(renderer.getHeight());
+    sink.setActiveSpeaker(activeSpeaker);
+    VideoSinkRegistry.bind(sink, track);
+  }
+
+  /** Stop rendering in {@code container} and give its renderer back. */
+  @MainThread
+  public static void release(@NonNull FrameLayout container) {
+    render(container, null, false, false);
+  }
+
+  /**
+   * Release the idle renderers, e.g. when leaving the room, and the borrowed ones as they are
+   * given back until the pool is used again.
+   */
+  @MainThread
+  public static void clear() {
+    sDraining = true;
+    for (SurfaceViewRenderer renderer : sIdle) {
+      sSinks.remove(renderer);
+      renderer.release();
+    }
+    sIdle.clear();
+  }
+
+  @Nullable
+  private static SurfaceViewRenderer getRenderer(@NonNull FrameLayout container) {
+    return container.getChildCount() > 0 ? (SurfaceViewRenderer) container.getChildAt(0) : null;
+  }
+
+  private static SurfaceViewRenderer acquire(@NonNull Context context) {
+    sDraining = false;
+    SurfaceViewRenderer renderer = sIdle.poll();
+    return renderer != null ? renderer : create(context.getApplicationContext());
+  }
+
+  private static void recycle(
+      @NonNull FrameLayout container, @NonNull SurfaceViewRenderer renderer) {
+    VideoSinkRegistry.unbind(sSinks.get(renderer));
+    container.removeView(renderer);
+    if (!sDraining && sIdle.size() < MAX_IDLE) {
+      // Do not show the previous tile's last frame on the next one.
+      renderer.clearImage();
+      sIdle.push(renderer);
+    } else {
+      sSinks.remove(renderer);
+      renderer.release();
+    }
+  }
+
+  private static SurfaceViewRenderer create(@NonNull Context appContext) {
+    Logger.d(TAG, "create(), idle: " + sIdle.size());
+    if (sEglContext == null) {
+      sEglContext = PeerConnectionUtils.getEglContext();
+    }
+    SurfaceViewRenderer renderer = new SurfaceViewRenderer(appContext);
+    renderer.init(sEglContext, null);
+    ThrottledVideoSink sink = new ThrottledVideoSink(renderer);
+    // The sink reads the height on the decoder thread, hand it over from here.
+    renderer.addOnLayoutChangeListener(
+        (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) ->
+            sink.setHeight(bottom - top));
+    sSinks.put(renderer, sink);
+    return renderer;
+  }
+}
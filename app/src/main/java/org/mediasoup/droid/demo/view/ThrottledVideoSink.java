@@ -0,0 +1,89 @@
+package org.mediasoup.droid.demo.view;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import org.mediasoup.droid.Logger;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+/**
+ * Forwards frames to a renderer at a rate fitting its tile: full rate for the active speaker and
+ * large tiles, less for small ones. Frames are dropped here, before the renderer uploads them.
+ *
+ * <p>Frames arrive on the decoder thread, the tile height is set from the main thread when the
+ * renderer is bound or laid out, see {@link RendererPool}.
+ */
+public class ThrottledVideoSink implements VideoSink {
+
+  private static final String TAG = "ThrottledVideoSink";
+
+  // Tiles at least LARGE_TILE_PX tall render at full rate, at least SMALL_TILE_PX tall at
+  // MEDIUM_TILE_FPS, smaller ones at SMALL_TILE_FPS.
+  private static final int LARGE_TILE_PX = 480;
+  private static final int SMALL_TILE_PX = 240;
+  private static final int MEDIUM_TILE_FPS = 15;
+  private static final int SMALL_TILE_FPS = 8;
+  // Log the counters every that many frames.
+  private static final int LOG_INTERVAL_FRAMES = 300;
+
+  @NonNull private final VideoSink mSink;
+  // Height of the renderer view in pixels, 0 until it is laid out.
+  private volatile int mHeightPx;
+  private volatile boolean mActiveSpeaker;
+  // Timestamp of the last forwarded frame, -1 if none yet.
+  private long mLastRenderedNs = -1;
+  private volatile long mRenderedFrames;
+  private volatile long mDroppedFrames;
+
+  public ThrottledVideoSink(@NonNull VideoSink sink) {
+    mSink = sink;
+  }
+
+  /** Height of the renderer behind the sink, which sets the frame rate. */
+  @MainThread
+  public void setHeight(int heightPx) {
+    mHeightPx = heightPx;
+  }
+
+  public void setActiveSpeaker(boolean activeSpeaker) {
+    mActiveSpeaker = activeSpeaker;
+  }
+
+  public long getRenderedFrames() {
+    return mRenderedFrames;
+  }
+
+  public long getDroppedFrames() {
+    return mDroppedFrames;
+  }
+
+  /** Frame rate cap for a tile {@code heightPx} tall, 0 for none. */
+  static int getMaxFps(int heightPx, boolean activeSpeaker) {
+    if (activeSpeaker || heightPx >= LARGE_TILE_PX) {
+      return 0;
+    }
+    return heightPx >= SMALL_TILE_PX ? MEDIUM_TILE_FPS : SMALL_TILE_FPS;
+  }
+
+  @Override
+  public void onFrame(VideoFrame frame) {
+    long timestampNs = frame.getTimestampNs();
+    int maxFps = getMaxFps(mHeightPx, mActiveSpeaker);
+    // 10% slack so a source at exactly maxFps is not halved by jitter. A timestamp going back
+    // means a new track, start over.
+    if (maxFps > 0
+        && mLastRenderedNs >= 0
+        && timestampNs >= mLastRenderedNs
+        && timestampNs - mLastRenderedNs < 900_000_000L / maxFps) {
+      mDroppedFrames++;
+    } else {
+      mLastRenderedNs = timestampNs;
+      mRenderedFrames++;
+      mSink.onFrame(frame);
+    }
+    if ((mRenderedFrames + mDroppedFrames) % LOG_INTERVAL_FRAMES == 0) {
+      Logger.d(TAG, "rendered: " + mRenderedFrames + ", dropped: " + mDroppedFrames);
+    }
+  }
+}
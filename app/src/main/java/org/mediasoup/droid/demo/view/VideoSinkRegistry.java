@@ -0,0 +1,66 @@
+package org.mediasoup.droid.demo.view;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.mediasoup.droid.Logger;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps each renderer fed by at most one VideoTrack.
+ *
+ * <p>Binding a renderer to a track first removes it from the track it was fed by, so recycled
+ * views never render several tracks at once. Main thread only.
+ */
+public final class VideoSinkRegistry {
+
+  private static final String TAG = "VideoSinkRegistry";
+
+  // Renderer -> track feeding it.
+  private static final Map<VideoSink, VideoTrack> sTracks = new HashMap<>();
+
+  private VideoSinkRegistry() {}
+
+  /** Feed {@code sink} with {@code track} only, or with nothing if null. */
+  @MainThread
+  public static void bind(@NonNull VideoSink sink, @Nullable VideoTrack track) {
+    VideoTrack current = sTracks.get(sink);
+    if (current == track) {
+      return;
+    }
+    if (current != null) {
+      removeSink(current, sink);
+    }
+    if (track != null) {
+      track.addSink(sink);
+      sTracks.put(sink, track);
+    } else {
+      sTracks.remove(sink);
+    }
+    Logger.d(TAG, "live sinks: " + sTracks.size());
+  }
+
+  @MainThread
+  public static void unbind(@NonNull VideoSink sink) {
+    bind(sink, null);
+  }
+
+  /** Number of renderers currently fed by a track. */
+  @MainThread
+  public static int getSinkCount() {
+    return sTracks.size();
+  }
+
+  private static void removeSink(@NonNull VideoTrack track, @NonNull VideoSink sink) {
+    try {
+      track.removeSink(sink);
+    } catch (IllegalStateException e) {
+      // Track already disposed along with its Consumer, nothing feeds the sink anymore.
+    }
+  }
+}
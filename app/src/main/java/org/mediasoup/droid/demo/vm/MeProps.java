@@ -170,8 +170,14 @@ public class MeProps extends PeerViewProps {
           .observe(
               owner,
               (producers) -> {
-                mAudioPW = producers.filter("audio");
-                mVideoPW = producers.filter("video");
+                Producers.ProducersWrapper audioPW = producers.filter("audio");
+                Producers.ProducersWrapper videoPW = producers.filter("video");
+                // Snapshots keep unchanged wrappers, same instances mean nothing to update.
+                if (audioPW == mAudioPW && videoPW == mVideoPW) {
+                  return;
+                }
+                mAudioPW = audioPW;
+                mVideoPW = videoPW;
                 notifyChange();
               });
       store
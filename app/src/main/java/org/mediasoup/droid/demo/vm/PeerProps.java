@@ -7,19 +7,19 @@ import androidx.databinding.BaseObservable;
 import androidx.databinding.Observable;
 import androidx.databinding.ObservableField;
 import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.Observer;
 
 import org.mediasoup.droid.Consumer;
 import org.mediasoup.droid.Logger;
 import org.mediasoup.droid.lib.lv.RoomStore;
 import org.mediasoup.droid.lib.model.Consumers;
+import org.mediasoup.droid.lib.model.Me;
 import org.mediasoup.droid.lib.model.Peer;
-import org.mediasoup.droid.lib.model.Peers;
+import org.mediasoup.droid.lib.model.RoomInfo;
 import org.webrtc.AudioTrack;
 import org.webrtc.VideoTrack;
 
-import java.util.Set;
-
 public class PeerProps extends PeerViewProps {
 
   private static final String TAG = "PeerProps";
@@ -27,6 +27,14 @@ public class PeerProps extends PeerViewProps {
   private final ObservableField<Boolean> mAudioEnabled;
   private final ObservableField<Boolean> mVideoVisible;
   private final StateComposer mStateComposer;
+  // Peer shown, set on connect.
+  private String mPeerId;
+  private final Observer<Me> mMeObserver = me -> mAudioMuted.set(me.isAudioMuted());
+  private final Observer<RoomInfo> mRoomInfoObserver =
+      roomInfo -> {
+        mFaceDetection.set(roomInfo.isFaceDetection());
+        mActiveSpeaker.set(mPeerId != null && mPeerId.equals(roomInfo.getActiveSpeakerId()));
+      };
 
   public PeerProps(@NonNull Application application, @NonNull RoomStore roomStore) {
     super(application, roomStore);
@@ -38,8 +46,8 @@ public class PeerProps extends PeerViewProps {
         new Observable.OnPropertyChangedCallback() {
           @Override
           public void onPropertyChanged(Observable sender, int propertyId) {
-            Consumers.ConsumerWrapper audioCW = mStateComposer.getConsumer("audio");
-            Consumers.ConsumerWrapper videoCW = mStateComposer.getConsumer("video");
+            Consumers.ConsumerWrapper audioCW = mStateComposer.mAudioCW;
+            Consumers.ConsumerWrapper videoCW = mStateComposer.mVideoCW;
             Consumer audioConsumer = audioCW != null ? audioCW.getConsumer() : null;
             Consumer videoConsumer = videoCW != null ? videoCW.getConsumer() : null;
 
@@ -76,13 +84,29 @@ public class PeerProps extends PeerViewProps {
   }
 
   public void connect(LifecycleOwner owner, @NonNull String peerId) {
-    getRoomStore().getMe().observe(owner, me -> mAudioMuted.set(me.isAudioMuted()));
-    getRoomStore()
-        .getRoomInfo()
-        .observe(owner, roomInfo -> mFaceDetection.set(roomInfo.isFaceDetection()));
+    mPeerId = peerId;
+    // Called again when the tile is rebound to another peer, observe Me and RoomInfo only once.
+    getRoomStore().getMe().removeObserver(mMeObserver);
+    getRoomStore().getMe().observe(owner, mMeObserver);
+    getRoomStore().getRoomInfo().removeObserver(mRoomInfoObserver);
+    getRoomStore().getRoomInfo().observe(owner, mRoomInfoObserver);
     mStateComposer.connect(owner, getRoomStore(), peerId);
   }
 
+  /**
+   * Whether this is connected to {@code peerId} through the LiveData the store has for it now. A
+   * peer that left and joined again with the same id gets new LiveData.
+   */
+  public boolean isConnectedTo(@NonNull String peerId) {
+    return peerId.equals(mPeerId) && mStateComposer.isConnectedTo(getRoomStore(), peerId);
+  }
+
+  /** Stop following the peer, e.g. when the tile is recycled. */
+  public void disconnect() {
+    mPeerId = null;
+    mStateComposer.disconnect();
+  }
+
   @Override
   public void connect(LifecycleOwner lifecycleOwner) {
     throw new IllegalAccessError("use connect with peer Id");
@@ -90,54 +114,70 @@ public class PeerProps extends PeerViewProps {
 
   public static class StateComposer extends BaseObservable {
 
-    private String mPeerId;
+    private LiveData<Peer> mPeerLiveData;
+    private LiveData<Consumers.ConsumerWrapper> mAudioLiveData;
+    private LiveData<Consumers.ConsumerWrapper> mVideoLiveData;
     private Peer mPeer;
-    private Consumers mConsumers;
-    private Observer<Peers> mPeersObservable =
-        peers -> {
-          mPeer = peers.getPeer(mPeerId);
-          Logger.w(
-              TAG,
-              "onChanged() id: "
-                  + mPeerId
-                  + ", name:"
-                  + (mPeer != null ? mPeer.getDisplayName() : ""));
-          // TODO(HaiyangWu): check whether need notify change.
-          notifyChange();
+    private Consumers.ConsumerWrapper mAudioCW;
+    private Consumers.ConsumerWrapper mVideoCW;
+
+    private final Observer<Peer> mPeerObserver =
+        peer -> {
+          // Snapshots share unchanged instances, same reference means nothing to update.
+          if (peer != mPeer) {
+            mPeer = peer;
+            Logger.d(TAG, "onChanged() name:" + (peer != null ? peer.getDisplayName() : ""));
+            notifyChange();
+          }
         };
 
-    private Observer<Consumers> mConsumersObserver =
-        consumers -> {
-          mConsumers = consumers;
-          // TODO(HaiyangWu): check whether need notify change.
-          notifyChange();
+    private final Observer<Consumers.ConsumerWrapper> mAudioObserver =
+        wrapper -> {
+          if (wrapper != mAudioCW) {
+            mAudioCW = wrapper;
+            notifyChange();
+          }
         };
 
-    void connect(@NonNull LifecycleOwner owner, RoomStore store, String peerId) {
-      mPeerId = peerId;
-      store.getPeers().removeObserver(mPeersObservable);
-      store.getPeers().observe(owner, mPeersObservable);
+    private final Observer<Consumers.ConsumerWrapper> mVideoObserver =
+        wrapper -> {
+          if (wrapper != mVideoCW) {
+            mVideoCW = wrapper;
+            notifyChange();
+          }
+        };
 
-      store.getConsumers().removeObserver(mConsumersObserver);
-      store.getConsumers().observe(owner, mConsumersObserver);
+    void connect(@NonNull LifecycleOwner owner, RoomStore store, String peerId) {
+      disconnect();
+      mPeerLiveData = store.getPeer(peerId);
+      mAudioLiveData = store.getConsumer(peerId, "audio");
+      mVideoLiveData = store.getConsumer(peerId, "video");
+      mPeerLiveData.observe(owner, mPeerObserver);
+      mAudioLiveData.observe(owner, mAudioObserver);
+      mVideoLiveData.observe(owner, mVideoObserver);
+      // Apply the new peer even if it starts out equal to the previous state.
+      notifyChange();
     }
 
-    Consumers.ConsumerWrapper getConsumer(String kind) {
-      if (mPeer == null || mConsumers == null) {
-        return null;
-      }
+    boolean isConnectedTo(RoomStore store, String peerId) {
+      return mPeerLiveData != null
+          && mPeerLiveData == store.getPeer(peerId)
+          && mAudioLiveData == store.getConsumer(peerId, "audio")
+          && mVideoLiveData == store.getConsumer(peerId, "video");
+    }
 
-      Set<String> consumerIds = mPeer.getConsumers();
-      for (String consumerId : consumerIds) {
-        Consumers.ConsumerWrapper wp = mConsumers.getConsumer(consumerId);
-        if (wp == null || wp.getConsumer() == null) {
-          continue;
-        }
-        if (kind.equals(wp.getConsumer().getKind())) {
-          return wp;
-        }
+    void disconnect() {
+      if (mPeerLiveData != null) {
+        mPeerLiveData.removeObserver(mPeerObserver);
+        mAudioLiveData.removeObserver(mAudioObserver);
+        mVideoLiveData.removeObserver(mVideoObserver);
       }
-      return null;
+      mPeerLiveData = null;
+      mAudioLiveData = null;
+      mVideoLiveData = null;
+      mPeer = null;
+      mAudioCW = null;
+      mVideoCW = null;
     }
   }
 }
@@ -39,6 +39,7 @@ public abstract class PeerViewProps extends EdiasProps {
   ObservableField<JSONArray> mAudioScore;
   ObservableField<JSONArray> mVideoScore;
   ObservableField<Boolean> mFaceDetection;
+  ObservableField<Boolean> mActiveSpeaker;
 
   public PeerViewProps(@NonNull Application application, @NonNull RoomStore roomStore) {
     super(application, roomStore);
@@ -67,6 +68,7 @@ public abstract class PeerViewProps extends EdiasProps {
     mAudioScore = new ObservableField<>();
     mVideoScore = new ObservableField<>();
     mFaceDetection = new ObservableField<>();
+    mActiveSpeaker = new ObservableField<>(Boolean.FALSE);
   }
 
   public void setMe(boolean me) {
@@ -172,4 +174,8 @@ public abstract class PeerViewProps extends EdiasProps {
   public ObservableField<Boolean> getFaceDetection() {
     return mFaceDetection;
   }
+
+  public ObservableField<Boolean> getActiveSpeaker() {
+    return mActiveSpeaker;
+  }
 }
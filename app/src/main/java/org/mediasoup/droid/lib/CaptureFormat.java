@@ -0,0 +1,35 @@
+package org.mediasoup.droid.lib;
+
+import androidx.annotation.NonNull;
+
+/** Camera capture resolution and frame rate. Immutable. */
+public class CaptureFormat {
+
+  private final int mWidth;
+  private final int mHeight;
+  private final int mFramerate;
+
+  public CaptureFormat(int width, int height, int framerate) {
+    mWidth = width;
+    mHeight = height;
+    mFramerate = framerate;
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getFramerate() {
+    return mFramerate;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return mWidth + "x" + mHeight + "@" + mFramerate;
+  }
+}
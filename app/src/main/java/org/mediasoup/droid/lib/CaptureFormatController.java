@@ -0,0 +1,110 @@
+package org.mediasoup.droid.lib;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import org.mediasoup.droid.Logger;
+
+import java.util.List;
+
+/**
+ * Picks the camera capture format from the configured ladder, highest first.
+ *
+ * <p>Starts from the former fixed 640x480@30 capture, steps down while the encoder reports CPU
+ * overuse and back up after a quiet period, but only while every sending layer goes out: capturing
+ * more for an uplink that already sheds layers only costs CPU. Steps above the start only on
+ * devices with cores to spare. Worker thread only.
+ */
+class CaptureFormatController implements SendLayerController.Listener {
+
+  private static final String TAG = "CaptureFormatController";
+
+  // Consecutive CPU limited stats samples (2s apart) before stepping down.
+  private static final int CPU_SAMPLES_TO_LOWER = 3;
+  // Quiet time before stepping back up.
+  private static final long RAISE_HOLD_MS = 30000;
+
+  @NonNull private final PeerConnectionUtils mPeerConnectionUtils;
+  @NonNull private final List<CaptureFormat> mFormats;
+  // Pixel rate of the capture format used before the ladder, where capture starts.
+  private static final int START_PIXEL_RATE = 640 * 480 * 30;
+
+  // Highest rung for this device, never raised above.
+  private final int mCeiling;
+  private int mIndex;
+  private int mCpuSamples;
+  private long mLastChangeMs;
+
+  @WorkerThread
+  CaptureFormatController(
+      @NonNull Context context,
+      @NonNull PeerConnectionUtils peerConnectionUtils,
+      @NonNull List<CaptureFormat> formats) {
+    mPeerConnectionUtils = peerConnectionUtils;
+    mFormats = formats;
+    int start = startIndex(formats);
+    if (isLowRamDevice(context)) {
+      // One rung below the start, never raised.
+      mIndex = Math.min(start + 1, formats.size() - 1);
+      mCeiling = mIndex;
+    } else {
+      mIndex = start;
+      mCeiling = Math.max(start - extraRungs(), 0);
+    }
+    mLastChangeMs = SystemClock.elapsedRealtime();
+    peerConnectionUtils.setCaptureFormat(formats.get(mIndex));
+  }
+
+  // First rung not above START_PIXEL_RATE, the last one if all are.
+  private static int startIndex(List<CaptureFormat> formats) {
+    for (int i = 0; i < formats.size(); i++) {
+      CaptureFormat format = formats.get(i);
+      if (format.getWidth() * format.getHeight() * format.getFramerate() <= START_PIXEL_RATE) {
+        return i;
+      }
+    }
+    return formats.size() - 1;
+  }
+
+  // Rungs above the start the device may step up to: two with 8+ cores, one with 6+, else none.
+  private static int extraRungs() {
+    int cores = Runtime.getRuntime().availableProcessors();
+    return cores >= 8 ? 2 : cores >= 6 ? 1 : 0;
+  }
+
+  private static boolean isLowRamDevice(Context context) {
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+        && activityManager != null
+        && activityManager.isLowRamDevice();
+  }
+
+  @Override
+  public void onSample(boolean cpuLimited, boolean allLayersSent) {
+    long now = SystemClock.elapsedRealtime();
+    if (cpuLimited) {
+      if (++mCpuSamples >= CPU_SAMPLES_TO_LOWER && mIndex < mFormats.size() - 1) {
+        change(mIndex + 1, now);
+      }
+      return;
+    }
+    mCpuSamples = 0;
+    if (allLayersSent && mIndex > mCeiling && now - mLastChangeMs >= RAISE_HOLD_MS) {
+      change(mIndex - 1, now);
+    }
+  }
+
+  private void change(int index, long now) {
+    Logger.d(TAG, "capture " + mFormats.get(mIndex) + " -> " + mFormats.get(index));
+    mIndex = index;
+    mCpuSamples = 0;
+    mLastChangeMs = now;
+    mPeerConnectionUtils.changeCaptureFormat(mFormats.get(index));
+  }
+}
@@ -0,0 +1,91 @@
+package org.mediasoup.droid.lib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How the camera is encoded: one RTP encoding per simulcast layer, lowest first, or a single
+ * encoding for VP9 SVC, plus the codec options given to produce().
+ */
+public class EncodingProfile {
+
+  public static class Layer {
+
+    private final double mScaleResolutionDownBy;
+    private final int mMaxBitrateBps;
+
+    public Layer(double scaleResolutionDownBy, int maxBitrateBps) {
+      mScaleResolutionDownBy = scaleResolutionDownBy;
+      mMaxBitrateBps = maxBitrateBps;
+    }
+
+    public double getScaleResolutionDownBy() {
+      return mScaleResolutionDownBy;
+    }
+
+    public int getMaxBitrateBps() {
+      return mMaxBitrateBps;
+    }
+  }
+
+  // Start bandwidth estimation at 1 Mbps so the upper layers come up quickly.
+  private static final String DEFAULT_CODEC_OPTIONS = "{\"videoGoogleStartBitrate\":1000}";
+
+  @NonNull private final List<Layer> mLayers;
+  @Nullable private final String mCodecOptions;
+
+  public EncodingProfile(@NonNull List<Layer> layers, @Nullable String codecOptions) {
+    mLayers = Collections.unmodifiableList(new ArrayList<>(layers));
+    mCodecOptions = codecOptions;
+  }
+
+  /** Three simulcast layers at 1/4, 1/2 and full resolution, as the mediasoup demo web client. */
+  public static EncodingProfile defaultSimulcast() {
+    return new EncodingProfile(
+        Arrays.asList(new Layer(4, 500000), new Layer(2, 1000000), new Layer(1, 5000000)),
+        DEFAULT_CODEC_OPTIONS);
+  }
+
+  /**
+   * One encoding for VP9, layered by the encoder itself. The WebRTC build in use does not expose
+   * scalabilityMode, so the encoder default SVC mode applies.
+   */
+  public static EncodingProfile defaultSvc() {
+    return new EncodingProfile(
+        Collections.singletonList(new Layer(1, 5000000)), DEFAULT_CODEC_OPTIONS);
+  }
+
+  @NonNull
+  public List<Layer> getLayers() {
+    return mLayers;
+  }
+
+  @Nullable
+  public String getCodecOptions() {
+    return mCodecOptions;
+  }
+
+  /** The encodings to produce with, null for an empty profile (a single default encoding). */
+  @Nullable
+  List<RtpParameters.Encoding> toEncodings() {
+    if (mLayers.isEmpty()) {
+      return null;
+    }
+    List<RtpParameters.Encoding> encodings = new ArrayList<>(mLayers.size());
+    for (Layer layer : mLayers) {
+      // libmediasoupclient assigns the rids.
+      RtpParameters.Encoding encoding =
+          new RtpParameters.Encoding(null, true, layer.mScaleResolutionDownBy);
+      encoding.maxBitrateBps = layer.mMaxBitrateBps;
+      encodings.add(encoding);
+    }
+    return encodings;
+  }
+}
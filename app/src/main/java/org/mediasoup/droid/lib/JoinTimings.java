@@ -0,0 +1,73 @@
+package org.mediasoup.droid.lib;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Per-stage durations of the last join, in milliseconds. */
+@SuppressWarnings("WeakerAccess")
+public class JoinTimings {
+
+  public enum Stage {
+    // getRouterRtpCapabilities round trip.
+    ROUTER_RTP_CAPABILITIES,
+    // Device.load(), from the cache when possible.
+    DEVICE_LOAD,
+    // send and recv Transports, requested along with the router RTP capabilities.
+    TRANSPORTS,
+    // join round trip.
+    JOIN,
+    // local mic/cam track creation, overlapped with the network stages.
+    LOCAL_TRACKS,
+  }
+
+  private final Map<Stage, Long> mDurations =
+      Collections.synchronizedMap(new EnumMap<>(Stage.class));
+  private volatile long mStartTime = -1;
+  private volatile long mTotal = -1;
+
+  static long now() {
+    return SystemClock.elapsedRealtime();
+  }
+
+  void start() {
+    mDurations.clear();
+    mTotal = -1;
+    mStartTime = now();
+  }
+
+  void record(@NonNull Stage stage, long stageStartTime) {
+    mDurations.put(stage, now() - stageStartTime);
+  }
+
+  void finish() {
+    if (mStartTime != -1) {
+      mTotal = now() - mStartTime;
+    }
+  }
+
+  /** Duration of {@code stage}, or -1 if it has not completed. */
+  public long get(@NonNull Stage stage) {
+    Long duration = mDurations.get(stage);
+    return duration != null ? duration : -1;
+  }
+
+  /** Time from join start to the join response, or -1 if not joined yet. */
+  public long getTotal() {
+    return mTotal;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("JoinTimings{");
+    for (Stage stage : Stage.values()) {
+      sb.append(stage.name()).append('=').append(get(stage)).append("ms, ");
+    }
+    return sb.append("TOTAL=").append(mTotal).append("ms}").toString();
+  }
+}
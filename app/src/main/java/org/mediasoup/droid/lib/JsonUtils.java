@@ -5,14 +5,54 @@ import androidx.annotation.NonNull;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.mediasoup.droid.Logger;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 public class JsonUtils {
 
+  private static final String TAG = "JsonUtils";
+
+  /**
+   * A JSON value kept as text, spliced verbatim into the output of {@link #toJsonText}.
+   *
+   * <p>Lets JSON produced by libmediasoupclient go out in a request without building and
+   * re-serializing a JSONObject tree. {@link JSONObject#toString()} writes it as a string.
+   */
+  public static final class RawJson {
+
+    @NonNull private final String mJson;
+
+    private RawJson(@NonNull String json) {
+      mJson = json;
+    }
+
+    /** Parse into an org.json value, for consumers that need the tree. */
+    public Object toJsonValue() throws JSONException {
+      return new JSONTokener(mJson).nextValue();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+      return mJson;
+    }
+  }
+
+  /** Wrap JSON text produced by libmediasoupclient so it can be put into a request as is. */
+  @NonNull
+  public static RawJson rawJson(@NonNull String json) {
+    return new RawJson(json);
+  }
+
   public static void jsonPut(JSONObject json, String key, Object value) {
     try {
       json.put(key, value);
     } catch (JSONException e) {
-      e.printStackTrace();
+      Logger.e(TAG, "jsonPut() | failed, key: " + key, e);
     }
   }
 
@@ -21,7 +61,7 @@ public class JsonUtils {
     try {
       return new JSONObject(data);
     } catch (JSONException e) {
-      e.printStackTrace();
+      Logger.e(TAG, "toJsonObject() | invalid JSON", e);
       return new JSONObject();
     }
   }
@@ -31,8 +71,181 @@ public class JsonUtils {
     try {
       return new JSONArray(data);
     } catch (JSONException e) {
-      e.printStackTrace();
+      Logger.e(TAG, "toJsonArray() | invalid JSON", e);
       return new JSONArray();
     }
   }
+
+  /** Like {@link JSONObject#toString()}, with {@link RawJson} values written as is. */
+  @NonNull
+  public static String toJsonText(@NonNull JSONObject json) {
+    StringBuilder out = new StringBuilder();
+    writeJson(out, json);
+    return out.toString();
+  }
+
+  private static void writeJson(StringBuilder out, Object value) {
+    if (value instanceof RawJson) {
+      out.append(((RawJson) value).mJson);
+    } else if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      out.append('{');
+      Iterator<String> keys = object.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        out.append(JSONObject.quote(key)).append(':');
+        writeJson(out, object.opt(key));
+        if (keys.hasNext()) {
+          out.append(',');
+        }
+      }
+      out.append('}');
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      out.append('[');
+      for (int i = 0; i < array.length(); i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        writeJson(out, array.opt(i));
+      }
+      out.append(']');
+    } else if (value == null || value == JSONObject.NULL) {
+      out.append("null");
+    } else if (value instanceof Number) {
+      try {
+        out.append(JSONObject.numberToString((Number) value));
+      } catch (JSONException e) {
+        // NaN or infinite, not representable in JSON.
+        Logger.e(TAG, "toJsonText() | invalid number", e);
+        out.append("null");
+      }
+    } else if (value instanceof Boolean) {
+      out.append(value);
+    } else {
+      out.append(JSONObject.quote(value.toString()));
+    }
+  }
+
+  /**
+   * Split a JSON object into its top-level members, each kept as raw JSON text.
+   *
+   * <p>Nested values are only scanned, not parsed, so they can be handed to libmediasoupclient
+   * without a JSONObject round trip. Returns an empty map if {@code data} is not an object.
+   */
+  @NonNull
+  public static Map<String, String> toRawMembers(String data) {
+    Map<String, String> members = new HashMap<>();
+    if (data == null) {
+      return members;
+    }
+    int length = data.length();
+    int i = skipWhitespace(data, 0);
+    if (i >= length || data.charAt(i) != '{') {
+      return members;
+    }
+    i++;
+    while (true) {
+      i = skipWhitespace(data, i);
+      if (i >= length || data.charAt(i) != '"') {
+        break;
+      }
+      int keyEnd = skipString(data, i);
+      String key = unquote(data.substring(i, keyEnd));
+      i = skipWhitespace(data, keyEnd);
+      if (i >= length || data.charAt(i) != ':') {
+        break;
+      }
+      i = skipWhitespace(data, i + 1);
+      int valueEnd = skipValue(data, i);
+      members.put(key, data.substring(i, valueEnd));
+      i = skipWhitespace(data, valueEnd);
+      if (i >= length || data.charAt(i) != ',') {
+        break;
+      }
+      i++;
+    }
+    return members;
+  }
+
+  /** Like {@link JSONObject#optString(String)}, on the result of {@link #toRawMembers}. */
+  @NonNull
+  public static String optRawString(@NonNull Map<String, String> members, String key) {
+    String raw = members.get(key);
+    return raw == null ? "" : unquote(raw);
+  }
+
+  private static String unquote(String raw) {
+    if (raw.length() < 2 || raw.charAt(0) != '"') {
+      return raw;
+    }
+    if (raw.indexOf('\\') == -1) {
+      return raw.substring(1, raw.length() - 1);
+    }
+    try {
+      return (String) new JSONTokener(raw).nextValue();
+    } catch (JSONException | ClassCastException e) {
+      Logger.e(TAG, "unquote() | invalid string", e);
+      return raw.substring(1, raw.length() - 1);
+    }
+  }
+
+  private static int skipWhitespace(String data, int i) {
+    while (i < data.length() && Character.isWhitespace(data.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  // Index right after the string starting at i.
+  private static int skipString(String data, int i) {
+    int length = data.length();
+    for (int j = i + 1; j < length; j++) {
+      char c = data.charAt(j);
+      if (c == '\\') {
+        j++;
+      } else if (c == '"') {
+        return j + 1;
+      }
+    }
+    return length;
+  }
+
+  // Index right after the value starting at i.
+  private static int skipValue(String data, int i) {
+    int length = data.length();
+    if (i >= length) {
+      return length;
+    }
+    char first = data.charAt(i);
+    if (first == '"') {
+      return skipString(data, i);
+    }
+    if (first == '{' || first == '[') {
+      int depth = 0;
+      for (int j = i; j < length; j++) {
+        char c = data.charAt(j);
+        if (c == '"') {
+          j = skipString(data, j) - 1;
+        } else if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          if (--depth == 0) {
+            return j + 1;
+          }
+        }
+      }
+      return length;
+    }
+    // number, true, false or null.
+    int j = i;
+    while (j < length) {
+      char c = data.charAt(j);
+      if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+        break;
+      }
+      j++;
+    }
+    return j;
+  }
 }
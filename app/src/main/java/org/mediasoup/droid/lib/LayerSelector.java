@@ -0,0 +1,59 @@
+package org.mediasoup.droid.lib;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Picks the simulcast/SVC layers worth receiving for a video tile of a given on-screen height. */
+final class LayerSelector {
+
+  // Height of the top spatial layer. Consumer parameters do not carry layer sizes, so senders are
+  // assumed to use a 720p camera with each lower layer halving the resolution.
+  private static final int TOP_LAYER_HEIGHT = 720;
+  // "S3T3" for simulcast, "L3T3" for SVC.
+  private static final Pattern SCALABILITY_MODE = Pattern.compile("^[LS](\\d+)T(\\d+)");
+
+  private LayerSelector() {}
+
+  /**
+   * Spatial and temporal layer counts from Consumer or Producer RTP parameters, {1, 1} if not
+   * scalable. A Producer sending simulcast has one encoding per spatial layer.
+   */
+  static int[] layerCounts(@Nullable String rtpParameters) {
+    int[] counts = {1, 1};
+    if (rtpParameters == null) {
+      return counts;
+    }
+    try {
+      JSONArray encodings = new JSONObject(rtpParameters).optJSONArray("encodings");
+      if (encodings == null || encodings.length() == 0) {
+        return counts;
+      }
+      String mode = encodings.getJSONObject(0).optString("scalabilityMode");
+      Matcher matcher = SCALABILITY_MODE.matcher(mode);
+      if (matcher.find()) {
+        counts[0] = Integer.parseInt(matcher.group(1));
+        counts[1] = Integer.parseInt(matcher.group(2));
+      }
+      counts[0] = Math.max(counts[0], encodings.length());
+    } catch (JSONException | NumberFormatException e) {
+      // Not scalable as far as we can tell.
+    }
+    return counts;
+  }
+
+  /** Lowest spatial layer at least {@code tileHeight} pixels tall, or the top one. */
+  static int spatialLayerFor(int tileHeight, int spatialLayers) {
+    for (int layer = 0; layer < spatialLayers - 1; layer++) {
+      if (TOP_LAYER_HEIGHT >> (spatialLayers - 1 - layer) >= tileHeight) {
+        return layer;
+      }
+    }
+    return spatialLayers - 1;
+  }
+}
@@ -0,0 +1,60 @@
+package org.mediasoup.droid.lib;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.protoojs.droid.Message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routes protoo notifications by method to a decoder, producing a typed event, and a handler.
+ *
+ * <p>Routes are registered up front, before any notification is dispatched.
+ */
+class NotificationDispatcher {
+
+  interface Decoder<T> {
+    @NonNull
+    T decode(@NonNull JSONObject data) throws JSONException;
+  }
+
+  interface Handler<T> {
+    void handle(@NonNull T event);
+  }
+
+  private static class Route<T> {
+    @NonNull private final Decoder<T> mDecoder;
+    @NonNull private final Handler<T> mHandler;
+
+    Route(@NonNull Decoder<T> decoder, @NonNull Handler<T> handler) {
+      mDecoder = decoder;
+      mHandler = handler;
+    }
+
+    void dispatch(@NonNull JSONObject data) throws JSONException {
+      mHandler.handle(mDecoder.decode(data));
+    }
+  }
+
+  private final Map<String, Route<?>> mRoutes = new HashMap<>();
+
+  <T> void register(
+      @NonNull String method, @NonNull Decoder<T> decoder, @NonNull Handler<T> handler) {
+    if (mRoutes.put(method, new Route<>(decoder, handler)) != null) {
+      throw new IllegalStateException("duplicate route for " + method);
+    }
+  }
+
+  /** Return false if no route is registered for the notification method. */
+  boolean dispatch(@NonNull Message.Notification notification) throws JSONException {
+    Route<?> route = mRoutes.get(notification.getMethod());
+    if (route == null) {
+      return false;
+    }
+    route.dispatch(notification.getData());
+    return true;
+  }
+}
@@ -0,0 +1,160 @@
+package org.mediasoup.droid.lib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Typed protoo notifications sent by the mediasoup-demo server.
+ *
+ * <p>Each event reads the fields it needs once, in its {@code decode} method, and is immutable
+ * afterwards.
+ */
+final class Notifications {
+
+  private Notifications() {}
+
+  static final class ProducerScore {
+    @NonNull final String producerId;
+    @NonNull final JSONArray score;
+
+    private ProducerScore(@NonNull String producerId, @NonNull JSONArray score) {
+      this.producerId = producerId;
+      this.score = score;
+    }
+
+    // {"producerId":"bdc2e83e-5294-451e-a986-a29c7d591d73","score":[{"score":10,"ssrc":196184265}]}
+    @NonNull
+    static ProducerScore decode(@NonNull JSONObject data) throws JSONException {
+      return new ProducerScore(data.getString("producerId"), data.getJSONArray("score"));
+    }
+  }
+
+  static final class NewPeer {
+    @NonNull final String id;
+    @NonNull final String displayName;
+    @NonNull final JSONObject info;
+
+    private NewPeer(@NonNull String id, @NonNull String displayName, @NonNull JSONObject info) {
+      this.id = id;
+      this.displayName = displayName;
+      this.info = info;
+    }
+
+    @NonNull
+    static NewPeer decode(@NonNull JSONObject data) throws JSONException {
+      return new NewPeer(data.getString("id"), data.optString("displayName"), data);
+    }
+  }
+
+  static final class PeerClosed {
+    @NonNull final String peerId;
+
+    private PeerClosed(@NonNull String peerId) {
+      this.peerId = peerId;
+    }
+
+    @NonNull
+    static PeerClosed decode(@NonNull JSONObject data) throws JSONException {
+      return new PeerClosed(data.getString("peerId"));
+    }
+  }
+
+  static final class PeerDisplayNameChanged {
+    @NonNull final String peerId;
+    @NonNull final String displayName;
+    @NonNull final String oldDisplayName;
+
+    private PeerDisplayNameChanged(
+        @NonNull String peerId, @NonNull String displayName, @NonNull String oldDisplayName) {
+      this.peerId = peerId;
+      this.displayName = displayName;
+      this.oldDisplayName = oldDisplayName;
+    }
+
+    @NonNull
+    static PeerDisplayNameChanged decode(@NonNull JSONObject data) throws JSONException {
+      return new PeerDisplayNameChanged(
+          data.getString("peerId"),
+          data.optString("displayName"),
+          data.optString("oldDisplayName"));
+    }
+  }
+
+  // consumerClosed, consumerPaused and consumerResumed.
+  static final class ConsumerEvent {
+    @NonNull final String consumerId;
+
+    private ConsumerEvent(@NonNull String consumerId) {
+      this.consumerId = consumerId;
+    }
+
+    @NonNull
+    static ConsumerEvent decode(@NonNull JSONObject data) throws JSONException {
+      return new ConsumerEvent(data.getString("consumerId"));
+    }
+  }
+
+  static final class ConsumerLayersChanged {
+    @NonNull final String consumerId;
+    final int spatialLayer;
+    final int temporalLayer;
+
+    private ConsumerLayersChanged(@NonNull String consumerId, int spatialLayer, int temporalLayer) {
+      this.consumerId = consumerId;
+      this.spatialLayer = spatialLayer;
+      this.temporalLayer = temporalLayer;
+    }
+
+    @NonNull
+    static ConsumerLayersChanged decode(@NonNull JSONObject data) throws JSONException {
+      return new ConsumerLayersChanged(
+          data.getString("consumerId"), data.optInt("spatialLayer"), data.optInt("temporalLayer"));
+    }
+  }
+
+  static final class ConsumerScore {
+    @NonNull final String consumerId;
+    @Nullable final JSONArray score;
+
+    private ConsumerScore(@NonNull String consumerId, @Nullable JSONArray score) {
+      this.consumerId = consumerId;
+      this.score = score;
+    }
+
+    @NonNull
+    static ConsumerScore decode(@NonNull JSONObject data) throws JSONException {
+      return new ConsumerScore(data.getString("consumerId"), data.optJSONArray("score"));
+    }
+  }
+
+  static final class DataConsumerClosed {
+    @NonNull final String dataConsumerId;
+
+    private DataConsumerClosed(@NonNull String dataConsumerId) {
+      this.dataConsumerId = dataConsumerId;
+    }
+
+    @NonNull
+    static DataConsumerClosed decode(@NonNull JSONObject data) throws JSONException {
+      return new DataConsumerClosed(data.getString("dataConsumerId"));
+    }
+  }
+
+  static final class ActiveSpeaker {
+    // null when nobody is speaking.
+    @Nullable final String peerId;
+
+    private ActiveSpeaker(@Nullable String peerId) {
+      this.peerId = peerId;
+    }
+
+    @NonNull
+    static ActiveSpeaker decode(@NonNull JSONObject data) {
+      return new ActiveSpeaker(data.isNull("peerId") ? null : data.optString("peerId"));
+    }
+  }
+}
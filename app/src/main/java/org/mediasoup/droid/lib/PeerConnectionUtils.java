@@ -27,6 +27,9 @@ import org.webrtc.VideoTrack;
 import org.webrtc.audio.AudioDeviceModule;
 import org.webrtc.audio.JavaAudioDeviceModule;
 
+import java.util.HashSet;
+import java.util.Set;
+
 @SuppressWarnings("WeakerAccess")
 public class PeerConnectionUtils {
 
@@ -49,6 +52,11 @@ public class PeerConnectionUtils {
   private AudioSource mAudioSource;
   private VideoSource mVideoSource;
   private CameraVideoCapturer mCamCapture;
+  // Format the camera captures with, or will once started.
+  private CaptureFormat mCaptureFormat = new CaptureFormat(640, 480, 30);
+  // Whoever needs camera frames (cam Producer, local preview...), capture runs while not empty.
+  private final Set<String> mCaptureOwners = new HashSet<>();
+  private boolean mCapturing;
 
   public PeerConnectionUtils() {
     mThreadChecker = new ThreadUtils.ThreadChecker();
@@ -213,6 +221,24 @@ public class PeerConnectionUtils {
     }
   }
 
+  /** Format to capture with once the camera starts. */
+  public void setCaptureFormat(CaptureFormat captureFormat) {
+    mThreadChecker.checkIsOnValidThread();
+    mCaptureFormat = captureFormat;
+  }
+
+  /** Switch the running capture, if any, to another format without restarting the source. */
+  public void changeCaptureFormat(CaptureFormat captureFormat) {
+    Logger.d(TAG, "changeCaptureFormat() " + captureFormat);
+    mThreadChecker.checkIsOnValidThread();
+    mCaptureFormat = captureFormat;
+    // Changing the format of a stopped capturer would start it.
+    if (mCapturing) {
+      mCamCapture.changeCaptureFormat(
+          captureFormat.getWidth(), captureFormat.getHeight(), captureFormat.getFramerate());
+    }
+  }
+
   // Video source creation.
   @MainThread
   private void createVideoSource(Context context) {
@@ -230,7 +256,50 @@ public class PeerConnectionUtils {
         SurfaceTextureHelper.create("CaptureThread", mEglBase.getEglBaseContext());
 
     mCamCapture.initialize(surfaceTextureHelper, context, mVideoSource.getCapturerObserver());
-    mCamCapture.startCapture(640, 480, 30);
+    updateCapture();
+  }
+
+  /**
+   * Start the camera on behalf of {@code owner} if not running. The source, track and capturer
+   * are kept across stops, so a restart only reopens the camera.
+   */
+  public void requestCapture(String owner) {
+    Logger.d(TAG, "requestCapture() " + owner);
+    mThreadChecker.checkIsOnValidThread();
+    mCaptureOwners.add(owner);
+    updateCapture();
+  }
+
+  /** Stop the camera once no owner needs its frames anymore. */
+  public void releaseCapture(String owner) {
+    Logger.d(TAG, "releaseCapture() " + owner);
+    mThreadChecker.checkIsOnValidThread();
+    mCaptureOwners.remove(owner);
+    updateCapture();
+  }
+
+  private void updateCapture() {
+    // Not created yet, createVideoSource() comes back here.
+    if (mCamCapture == null || mVideoSource == null) {
+      return;
+    }
+    boolean needed = !mCaptureOwners.isEmpty();
+    if (needed == mCapturing) {
+      return;
+    }
+    if (needed) {
+      mCamCapture.startCapture(
+          mCaptureFormat.getWidth(), mCaptureFormat.getHeight(), mCaptureFormat.getFramerate());
+      mCapturing = true;
+      return;
+    }
+    try {
+      mCamCapture.stopCapture();
+    } catch (InterruptedException e) {
+      Logger.e(TAG, "stopCapture() interrupted", e);
+      Thread.currentThread().interrupt();
+    }
+    mCapturing = false;
   }
 
   // Audio track creation.
@@ -261,6 +330,8 @@ public class PeerConnectionUtils {
       mCamCapture.dispose();
       mCamCapture = null;
     }
+    mCaptureOwners.clear();
+    mCapturing = false;
 
     if (mVideoSource != null) {
       mVideoSource.dispose();
@@ -1,5 +1,7 @@
 package org.mediasoup.droid.lib;
 
+import android.os.SystemClock;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
@@ -8,7 +10,12 @@ import org.mediasoup.droid.Logger;
 import org.mediasoup.droid.lib.socket.WebSocketTransport;
 import org.protoojs.droid.ProtooException;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class Protoo extends org.protoojs.droid.Peer {
@@ -19,8 +26,82 @@ public class Protoo extends org.protoojs.droid.Peer {
     void request(JSONObject req);
   }
 
+  @NonNull private final WebSocketTransport mTransport;
+  // Local sequence used to correlate in-flight requests with their replies in logs.
+  private final AtomicLong mRequestSeq = new AtomicLong();
+  // In-flight requests, keyed by local sequence.
+  private final Map<Long, PendingRequest> mPendingRequests = new ConcurrentHashMap<>();
+
+  private static class PendingRequest {
+    @NonNull final String method;
+    final long startTime;
+    @NonNull final ObservableEmitter<String> emitter;
+    // Whether a thread is parked on it, see syncRequest().
+    final boolean blocking;
+    // protoo request id, 0 until the transport accepted the request.
+    volatile long requestId;
+
+    PendingRequest(
+        @NonNull String method, @NonNull ObservableEmitter<String> emitter, boolean blocking) {
+      this.method = method;
+      this.startTime = SystemClock.elapsedRealtime();
+      this.emitter = emitter;
+      this.blocking = blocking;
+    }
+  }
+
   public Protoo(@NonNull WebSocketTransport transport, @NonNull Listener listener) {
     super(transport, listener);
+    mTransport = transport;
+    transport.setConnectionChangeCallback(this::failBlockingRequests);
+  }
+
+  // A blocking request parks the worker thread, which must be free to resume or reset the session
+  // on the next open, so fail them whenever the connection opens or goes away.
+  private void failBlockingRequests() {
+    for (Map.Entry<Long, PendingRequest> entry : mPendingRequests.entrySet()) {
+      if (entry.getValue().blocking && onSettled(entry.getKey())) {
+        Logger.w(TAG, "failing blocking " + entry.getValue().method + " on connection change");
+        fail(entry.getValue(), new ProtooException(-1, "connection changed"));
+      }
+    }
+  }
+
+  // Fail pending, and drop its message if the transport still queues it: nobody waits for it.
+  private void fail(PendingRequest pending, ProtooException error) {
+    if (pending.requestId != 0) {
+      mTransport.cancelRequest(pending.requestId);
+    }
+    pending.emitter.onError(error);
+  }
+
+  /** After a reconnect, send the requests queued while disconnected: the session goes on. */
+  public void resumeSession() {
+    mTransport.releaseSendQueue();
+  }
+
+  /**
+   * Give up on the current session: drop the requests still queued and fail every request waiting
+   * for an answer, so none of them completes against the next session.
+   */
+  public void resetSession() {
+    mTransport.discardSendQueue();
+    for (Long seq : mPendingRequests.keySet()) {
+      PendingRequest pending = mPendingRequests.remove(seq);
+      if (pending != null) {
+        Logger.w(TAG, "resetSession() | failing " + pending.method + ", seq: " + seq);
+        pending.emitter.onError(new ProtooException(-1, "session reset"));
+      }
+    }
+  }
+
+  /**
+   * Number of requests sent but not yet answered by the server.
+   *
+   * <p>Requests are pipelined, so many of them can be in flight at the same time.
+   */
+  public int getPendingRequestCount() {
+    return mPendingRequests.size();
   }
 
   public Observable<String> request(String method) {
@@ -33,30 +114,85 @@ public class Protoo extends org.protoojs.droid.Peer {
     return request(method, req);
   }
 
+  /**
+   * Send a request without waiting for the response.
+   *
+   * <p>The returned Observable is cold: the request is sent on subscribe, emits the response data
+   * once and then completes. Replies are delivered on the socket thread, so callers touching
+   * worker-confined state should {@code observeOn} their own scheduler.
+   */
   private Observable<String> request(String method, @NonNull JSONObject data) {
-    Logger.d(TAG, "request(), method: " + method);
+    return request(method, data, false);
+  }
+
+  private Observable<String> request(String method, @NonNull JSONObject data, boolean blocking) {
     return Observable.create(
-        emitter ->
+        source -> {
+          // Settled from the socket thread, or from resetSession() on any thread.
+          final ObservableEmitter<String> emitter = source.serialize();
+          final long seq = mRequestSeq.incrementAndGet();
+          final PendingRequest pending = new PendingRequest(method, emitter, blocking);
+          mPendingRequests.put(seq, pending);
+          emitter.setCancellable(() -> mPendingRequests.remove(seq));
+          Logger.d(TAG, "request(), method: " + method + ", seq: " + seq);
+
+          try {
             request(
                 method,
                 data,
                 new ClientRequestHandler() {
                   @Override
                   public void resolve(String data) {
-                    if (!emitter.isDisposed()) {
+                    if (onSettled(seq)) {
                       emitter.onNext(data);
+                      emitter.onComplete();
                     }
                   }
 
                   @Override
                   public void reject(long error, String errorReason) {
-                    if (!emitter.isDisposed()) {
-                      emitter.onError(new ProtooException(error, errorReason));
+                    // Also called by protoo-client on timeout, with the request maybe queued.
+                    if (onSettled(seq)) {
+                      fail(pending, new ProtooException(error, errorReason));
                     }
                   }
-                }));
+                });
+            pending.requestId = mTransport.takeSentRequestId();
+          } catch (IllegalStateException e) {
+            // The transport refused the message: closed, or its send queue is full.
+            if (onSettled(seq)) {
+              emitter.onError(new ProtooException(503, e.getMessage()));
+            }
+          }
+        });
+  }
+
+  // Whether seq was still pending, only the first of response, error or reset settles it.
+  private boolean onSettled(long seq) {
+    PendingRequest pending = mPendingRequests.remove(seq);
+    if (pending == null) {
+      return false;
+    }
+    Logger.d(
+        TAG,
+        "response, method: "
+            + pending.method
+            + ", seq: "
+            + seq
+            + ", elapsed: "
+            + (SystemClock.elapsedRealtime() - pending.startTime)
+            + "ms, in flight: "
+            + mPendingRequests.size());
+    return true;
   }
 
+  /**
+   * Blocking variant of {@link #request(String)}.
+   *
+   * <p>Parks the calling thread until the server answers, so it is only meant for callbacks that
+   * must return the response synchronously (e.g. {@code SendTransport.Listener#onProduce}). Fails
+   * if the connection opens or goes away meanwhile.
+   */
   @WorkerThread
   public String syncRequest(String method) throws ProtooException {
     return syncRequest(method, new JSONObject());
@@ -75,7 +211,7 @@ public class Protoo extends org.protoojs.droid.Peer {
     Logger.d(TAG, "syncRequest(), method: " + method);
 
     try {
-      return request(method, data).blockingFirst();
+      return request(method, data, true).blockingFirst();
     } catch (Throwable throwable) {
       throw new ProtooException(-1, throwable.getMessage());
     }
@@ -9,6 +9,7 @@ import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import org.json.JSONArray;
@@ -23,6 +24,10 @@ import org.mediasoup.droid.RecvTransport;
 import org.mediasoup.droid.SendTransport;
 import org.mediasoup.droid.Transport;
 import org.mediasoup.droid.lib.lv.RoomStore;
+import org.mediasoup.droid.lib.model.Consumers;
+import org.mediasoup.droid.lib.model.Peer;
+import org.mediasoup.droid.lib.socket.CborCodec;
+import org.mediasoup.droid.lib.socket.JsonCodec;
 import org.mediasoup.droid.lib.socket.WebSocketTransport;
 import org.protoojs.droid.Message;
 import org.protoojs.droid.ProtooException;
@@ -30,10 +35,21 @@ import org.webrtc.AudioTrack;
 import org.webrtc.CameraVideoCapturer;
 import org.webrtc.VideoTrack;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 
 import static org.mediasoup.droid.lib.JsonUtils.jsonPut;
-import static org.mediasoup.droid.lib.JsonUtils.toJsonObject;
+import static org.mediasoup.droid.lib.JsonUtils.optRawString;
+import static org.mediasoup.droid.lib.JsonUtils.rawJson;
+import static org.mediasoup.droid.lib.JsonUtils.toRawMembers;
 
 public class RoomClient extends RoomMessageHandler {
 
@@ -48,6 +64,15 @@ public class RoomClient extends RoomMessageHandler {
     CLOSED,
   }
 
+  // Camera capture owner standing for the cam Producer.
+  private static final String CAPTURE_OWNER_CAM = "camProducer";
+  // Recent speakers ranked above the silent peers, and the Consumer priorities by rank: the
+  // active speaker, the other recent speakers, everybody else.
+  private static final int MAX_RANKED_SPEAKERS = 3;
+  private static final int PRIORITY_SPEAKER = 3;
+  private static final int PRIORITY_RECENT_SPEAKER = 2;
+  private static final int PRIORITY_SILENT = 1;
+
   // Closed flag.
   private volatile boolean mClosed;
   // Android context.
@@ -62,6 +87,10 @@ public class RoomClient extends RoomMessageHandler {
   private long mNextDataChannelTestNumber;
   // Protoo URL.
   private String mProtooUrl;
+  // Protoo host, key of the router RTP capabilities cache.
+  private String mProtooHost;
+  // Cached router RTP capabilities.
+  private RtpCapabilitiesCache mRtpCapabilitiesCache;
   // mProtoo-client Protoo instance.
   private Protoo mProtoo;
   // mediasoup-client Device instance.
@@ -78,6 +107,8 @@ public class RoomClient extends RoomMessageHandler {
   private VideoTrack mLocalVideoTrack;
   // Local cam mediasoup Producer.
   private Producer mCamProducer;
+  // Adapts the camera capture format to the device and encoder load.
+  private CaptureFormatController mCaptureFormatController;
   // TODO(Haiyangwu): Local share mediasoup Producer.
   private Producer mShareProducer;
   // TODO(Haiyangwu): Local chat DataProducer.
@@ -86,12 +117,32 @@ public class RoomClient extends RoomMessageHandler {
   private Producer mBotDataProducer;
   // jobs worker handler.
   private Handler mWorkHandler;
+  // jobs worker scheduler, used to run request continuations on the worker looper.
+  private Scheduler mWorkScheduler;
   // main looper handler.
   private Handler mMainHandler;
   // Disposable Composite. used to cancel running
   private CompositeDisposable mCompositeDisposable = new CompositeDisposable();
   // Share preferences
   private SharedPreferences mPreferences;
+  // Whether the join request succeeded for the current session.
+  private boolean mJoined;
+  // Whether the server keeps our peer across a signaling reconnect, as advertised in its join
+  // response. The stock server closes the peer along with its socket.
+  private boolean mServerResumable;
+  // Cache entry mMediasoupDevice was loaded from while the join requests were in flight, if any.
+  @Nullable private RtpCapabilitiesCache.Entry mCachedRtpCapabilities;
+  // Last known connection state of mSendTransport and mRecvTransport.
+  private volatile String mSendTransportState;
+  private volatile String mRecvTransportState;
+  // Per-stage durations of the last join.
+  private final JoinTimings mJoinTimings = new JoinTimings();
+  // Peers whose tile is off screen, their video Consumers stay paused. Worker thread only.
+  private final Set<String> mHiddenPeerIds = new HashSet<>();
+  // On-screen tile height by peer id, drives the preferred layers of its video. Worker thread only.
+  private final Map<String, Integer> mPeerVideoHeights = new HashMap<>();
+  // Peers by how recently they were the active speaker, most recent first. Worker thread only.
+  private final LinkedList<String> mSpeakerRanking = new LinkedList<>();
 
   public RoomClient(
       Context context, RoomStore roomStore, String roomId, String peerId, String displayName) {
@@ -123,17 +174,32 @@ public class RoomClient extends RoomMessageHandler {
     this.mDisplayName = displayName;
     this.mClosed = false;
     this.mProtooUrl = UrlFactory.getProtooUrl(roomId, peerId, forceH264, forceVP9);
+    this.mProtooHost = UrlFactory.getProtooHost();
 
     this.mStore.setMe(peerId, displayName, this.mOptions.getDevice());
     this.mStore.setRoomUrl(roomId, UrlFactory.getInvitationLink(roomId, forceH264, forceVP9));
     this.mPreferences = PreferenceManager.getDefaultSharedPreferences(this.mContext);
+    this.mRtpCapabilitiesCache = new RtpCapabilitiesCache(this.mContext);
 
     // init worker handler.
     HandlerThread handlerThread = new HandlerThread("worker");
     handlerThread.start();
     mWorkHandler = new Handler(handlerThread.getLooper());
+    mWorkScheduler = AndroidSchedulers.from(handlerThread.getLooper());
     mMainHandler = new Handler(Looper.getMainLooper());
-    mWorkHandler.post(() -> mPeerConnectionUtils = new PeerConnectionUtils());
+    mWorkHandler.post(
+        () -> {
+          mPeerConnectionUtils = new PeerConnectionUtils();
+          mCaptureFormatController =
+              new CaptureFormatController(
+                  mContext, mPeerConnectionUtils, mOptions.getCaptureFormats());
+          mSendLayerController.setListener(mCaptureFormatController);
+          mScoreCoalescer.start(mWorkHandler, mOptions.getScoreCoalescingWindowMs());
+        });
+  }
+
+  public JoinTimings getJoinTimings() {
+    return mJoinTimings;
   }
 
   @Async
@@ -142,7 +208,10 @@ public class RoomClient extends RoomMessageHandler {
     mStore.setRoomState(ConnectionState.CONNECTING);
     mWorkHandler.post(
         () -> {
-          WebSocketTransport transport = new WebSocketTransport(mProtooUrl);
+          WebSocketTransport transport =
+              mOptions.isBinarySignaling()
+                  ? new WebSocketTransport(mProtooUrl, new CborCodec(), new JsonCodec())
+                  : new WebSocketTransport(mProtooUrl, new JsonCodec());
           mProtoo = new Protoo(transport, peerListener);
         });
   }
@@ -234,7 +303,7 @@ public class RoomClient extends RoomMessageHandler {
             if (!"video".equals(holder.mConsumer.getKind())) {
               continue;
             }
-            pauseConsumer(holder.mConsumer);
+            pauseConsumer(holder);
           }
           mStore.setAudioOnlyState(true);
           mStore.setAudioOnlyInProgress(false);
@@ -252,16 +321,39 @@ public class RoomClient extends RoomMessageHandler {
     mWorkHandler.post(
         () -> {
           for (ConsumerHolder holder : mConsumers.values()) {
-            if (!"video".equals(holder.mConsumer.getKind())) {
+            if (!"video".equals(holder.mConsumer.getKind())
+                || mHiddenPeerIds.contains(holder.peerId)) {
               continue;
             }
-            resumeConsumer(holder.mConsumer);
+            resumeConsumer(holder);
           }
           mStore.setAudioOnlyState(false);
           mStore.setAudioOnlyInProgress(false);
         });
   }
 
+  /**
+   * Pause the video Consumers of a peer whose tile is not visible, resume them when it is again.
+   *
+   * <p>Video stays paused in audio only mode whatever the visibility.
+   */
+  @Async
+  public void setPeerVideoVisible(String peerId, boolean visible) {
+    Logger.d(TAG, "setPeerVideoVisible() " + peerId + ", " + visible);
+    mWorkHandler.post(
+        () -> {
+          boolean changed = visible ? mHiddenPeerIds.remove(peerId) : mHiddenPeerIds.add(peerId);
+          if (!changed) {
+            return;
+          }
+          for (ConsumerHolder holder : mConsumers.values()) {
+            if (holder.peerId.equals(peerId)) {
+              syncVideoConsumerPaused(holder);
+            }
+          }
+        });
+  }
+
   @Async
   public void muteAudio() {
     Logger.d(TAG, "muteAudio()");
@@ -272,7 +364,7 @@ public class RoomClient extends RoomMessageHandler {
             if (!"audio".equals(holder.mConsumer.getKind())) {
               continue;
             }
-            pauseConsumer(holder.mConsumer);
+            pauseConsumer(holder);
           }
         });
   }
@@ -287,7 +379,7 @@ public class RoomClient extends RoomMessageHandler {
             if (!"audio".equals(holder.mConsumer.getKind())) {
               continue;
             }
-            resumeConsumer(holder.mConsumer);
+            resumeConsumer(holder);
           }
         });
   }
@@ -297,65 +389,83 @@ public class RoomClient extends RoomMessageHandler {
     Logger.d(TAG, "restartIce()");
     mStore.setRestartIceInProgress(true);
     mWorkHandler.post(
-        () -> {
-          try {
-            if (mSendTransport != null) {
-              String iceParameters =
-                  mProtoo.syncRequest(
-                      "restartIce", req -> jsonPut(req, "transportId", mSendTransport.getId()));
-              mSendTransport.restartIce(iceParameters);
-            }
-            if (mRecvTransport != null) {
-              String iceParameters =
-                  mProtoo.syncRequest(
-                      "restartIce", req -> jsonPut(req, "transportId", mRecvTransport.getId()));
-              mRecvTransport.restartIce(iceParameters);
-            }
-          } catch (Exception e) {
-            e.printStackTrace();
-            logError("restartIce() | failed:", e);
-            mStore.addNotify("error", "ICE restart failed: " + e.getMessage());
-          }
-          mStore.setRestartIceInProgress(false);
-        });
+        () ->
+            mCompositeDisposable.add(
+                Observable.merge(restartIce(mSendTransport), restartIce(mRecvTransport))
+                    .ignoreElements()
+                    .subscribe(
+                        () -> mStore.setRestartIceInProgress(false),
+                        t -> {
+                          logError("restartIce() | failed:", t);
+                          mStore.addNotify("error", "ICE restart failed: " + t.getMessage());
+                          mStore.setRestartIceInProgress(false);
+                        })));
   }
 
-  @Async
-  public void setMaxSendingSpatialLayer() {
-    Logger.d(TAG, "setMaxSendingSpatialLayer()");
-    // TODO(feature): layer
+  @WorkerThread
+  private Observable<String> restartIce(Transport transport) {
+    if (transport == null) {
+      return Observable.empty();
+    }
+    return mProtoo
+        .request("restartIce", req -> jsonPut(req, "transportId", transport.getId()))
+        .observeOn(mWorkScheduler)
+        .doOnNext(transport::restartIce);
   }
 
+  /**
+   * Cap the spatial layer sent by the cam Producer, also over later ones. When the options allow
+   * it, the layer may still go lower if the uplink struggles.
+   */
   @Async
-  public void setConsumerPreferredLayers(String spatialLayer) {
-    Logger.d(TAG, "setConsumerPreferredLayers()");
-    // TODO(feature): layer
+  public void setMaxSendingSpatialLayer(int spatialLayer) {
+    Logger.d(TAG, "setMaxSendingSpatialLayer() " + spatialLayer);
+    mWorkHandler.post(() -> mSendLayerController.setLimit(spatialLayer));
   }
 
   @Async
-  public void setConsumerPreferredLayers(
-      String consumerId, String spatialLayer, String temporalLayer) {
+  public void setConsumerPreferredLayers(String consumerId, int spatialLayer, int temporalLayer) {
     Logger.d(TAG, "setConsumerPreferredLayers()");
-    // TODO: layer
+    mWorkHandler.post(() -> requestPreferredLayers(consumerId, spatialLayer, temporalLayer));
   }
 
+  /**
+   * Receive the video of a peer at the lowest spatial layer covering a tile {@code height} pixels
+   * tall. Only matters for simulcast or SVC Consumers.
+   */
   @Async
-  public void requestConsumerKeyFrame(String consumerId) {
-    Logger.d(TAG, "requestConsumerKeyFrame()");
+  public void setPeerVideoHeight(String peerId, int height) {
     mWorkHandler.post(
         () -> {
-          try {
-            mProtoo.syncRequest(
-                "requestConsumerKeyFrame", req -> jsonPut(req, "consumerId", "consumerId"));
-            mStore.addNotify("Keyframe requested for video consumer");
-          } catch (ProtooException e) {
-            e.printStackTrace();
-            logError("restartIce() | failed:", e);
-            mStore.addNotify("error", "ICE restart failed: " + e.getMessage());
+          Integer previous = mPeerVideoHeights.put(peerId, height);
+          if (previous != null && previous == height) {
+            return;
+          }
+          for (ConsumerHolder holder : mConsumers.values()) {
+            if (holder.peerId.equals(peerId)) {
+              updatePreferredLayers(holder);
+            }
           }
         });
   }
 
+  @Async
+  public void requestConsumerKeyFrame(String consumerId) {
+    Logger.d(TAG, "requestConsumerKeyFrame()");
+    mWorkHandler.post(
+        () ->
+            mProtoo
+                .request(
+                    "requestConsumerKeyFrame", req -> jsonPut(req, "consumerId", consumerId))
+                .observeOn(mWorkScheduler)
+                .subscribe(
+                    res -> mStore.addNotify("Keyframe requested for video consumer"),
+                    t -> {
+                      logError("requestConsumerKeyFrame() | failed:", t);
+                      mStore.addNotify("error", "Keyframe request failed: " + t.getMessage());
+                    }));
+  }
+
   @Async
   public void enableChatDataProducer() {
     Logger.d(TAG, "enableChatDataProducer()");
@@ -388,23 +498,24 @@ public class RoomClient extends RoomMessageHandler {
     mPreferences.edit().putString("displayName", displayName).apply();
 
     mWorkHandler.post(
-        () -> {
-          try {
-            mProtoo.syncRequest(
-                "changeDisplayName", req -> jsonPut(req, "displayName", displayName));
-            mDisplayName = displayName;
-            mStore.setDisplayName(displayName);
-            mStore.addNotify("Display name change");
-          } catch (ProtooException e) {
-            e.printStackTrace();
-            logError("changeDisplayName() | failed:", e);
-            mStore.addNotify("error", "Could not change display name: " + e.getMessage());
-
-            // We need to refresh the component for it to render the previous
-            // displayName again.
-            mStore.setDisplayName(mDisplayName);
-          }
-        });
+        () ->
+            mProtoo
+                .request("changeDisplayName", req -> jsonPut(req, "displayName", displayName))
+                .observeOn(mWorkScheduler)
+                .subscribe(
+                    res -> {
+                      mDisplayName = displayName;
+                      mStore.setDisplayName(displayName);
+                      mStore.addNotify("Display name change");
+                    },
+                    t -> {
+                      logError("changeDisplayName() | failed:", t);
+                      mStore.addNotify("error", "Could not change display name: " + t.getMessage());
+
+                      // We need to refresh the component for it to render the previous
+                      // displayName again.
+                      mStore.setDisplayName(mDisplayName);
+                    }));
   }
 
   @Async
@@ -513,6 +624,10 @@ public class RoomClient extends RoomMessageHandler {
             mProtoo = null;
           }
 
+          // drop score updates not applied yet.
+          mScoreCoalescer.clear();
+          mSendLayerController.stop();
+
           // dispose all transport and device.
           disposeTransportDevice();
 
@@ -547,6 +662,9 @@ public class RoomClient extends RoomMessageHandler {
   @WorkerThread
   private void disposeTransportDevice() {
     Logger.d(TAG, "disposeTransportDevice()");
+    mSendTransportState = null;
+    mRecvTransportState = null;
+
     // Close mediasoup Transports.
     if (mSendTransport != null) {
       mSendTransport.close();
@@ -567,11 +685,189 @@ public class RoomClient extends RoomMessageHandler {
     }
   }
 
+  @WorkerThread
+  private void disposeSession() {
+    Logger.d(TAG, "disposeSession()");
+    mJoined = false;
+    // Requests of the old session must not reach, or complete against, the next one.
+    if (mProtoo != null) {
+      mProtoo.resetSession();
+    }
+    // Consumers die with mRecvTransport, drop them from the store as well.
+    mStore.transaction(
+        () -> {
+          for (ConsumerHolder holder : mConsumers.values()) {
+            mStore.removeConsumer(holder.peerId, holder.mConsumer.getId());
+          }
+        });
+    mConsumers.clear();
+    disposeTransportDevice();
+  }
+
+  @WorkerThread
+  private boolean canResume() {
+    return isResumeSupported()
+        && mJoined
+        && mMediasoupDevice != null
+        && mMediasoupDevice.isLoaded()
+        && (mSendTransport != null || mRecvTransport != null);
+  }
+
+  @WorkerThread
+  private boolean isResumeSupported() {
+    return mOptions.isResumeOnReconnect() && mServerResumable;
+  }
+
+  // Resume the session on a new signaling connection, keeping Device, Transports and Consumers.
+  @WorkerThread
+  private void resumeImpl() {
+    Logger.d(TAG, "resumeImpl()");
+    mCompositeDisposable.add(
+        Observable.merge(
+                probeTransport(mSendTransport, mSendTransportState),
+                probeTransport(mRecvTransport, mRecvTransportState))
+            .ignoreElements()
+            .observeOn(mWorkScheduler)
+            .subscribe(
+                () -> {
+                  if (mClosed) {
+                    return;
+                  }
+                  reconcilePeers();
+                  reconcileConsumers();
+                  mStore.setRoomState(ConnectionState.CONNECTED);
+                  mStore.addNotify("Reconnected to the room", 3000);
+                },
+                t -> {
+                  if (mClosed) {
+                    return;
+                  }
+                  // The server lost our Transports, fall back to a full rejoin.
+                  Logger.w(TAG, "resume failed, rejoining: " + t.getMessage());
+                  disposeSession();
+                  joinImpl();
+                }));
+  }
+
+  // Check the server still has the Transport, restart ICE if media connectivity was lost too.
+  @WorkerThread
+  private Observable<String> probeTransport(Transport transport, String connectionState) {
+    if (transport == null) {
+      return Observable.empty();
+    }
+    boolean needIceRestart =
+        "failed".equals(connectionState) || "disconnected".equals(connectionState);
+    return mProtoo
+        .request("getTransportStats", req -> jsonPut(req, "transportId", transport.getId()))
+        .observeOn(mWorkScheduler)
+        .flatMap(stats -> needIceRestart ? restartIce(transport) : Observable.just(stats));
+  }
+
+  // Apply the peers which joined or left while signaling was down. A resumable server answers
+  // getPeers like the join request.
+  @WorkerThread
+  private void reconcilePeers() {
+    mCompositeDisposable.add(
+        mProtoo
+            .request("getPeers")
+            .observeOn(mWorkScheduler)
+            .subscribe(
+                res -> {
+                  if (mClosed) {
+                    return;
+                  }
+                  JSONArray peers = JsonUtils.toJsonObject(res).optJSONArray("peers");
+                  Map<String, JSONObject> current = new HashMap<>();
+                  for (int i = 0; peers != null && i < peers.length(); i++) {
+                    JSONObject peer = peers.optJSONObject(i);
+                    if (peer != null) {
+                      current.put(peer.optString("id"), peer);
+                    }
+                  }
+                  mStore.transaction(
+                      () -> {
+                        for (Peer peer : mStore.getPeers().getHead().getAllPeers()) {
+                          if (current.remove(peer.getId()) == null) {
+                            Logger.w(TAG, "reconcilePeers() | peer gone: " + peer.getId());
+                            closePeerConsumers(peer.getId());
+                            mStore.removePeer(peer.getId());
+                          }
+                        }
+                        for (Map.Entry<String, JSONObject> peer : current.entrySet()) {
+                          mStore.addPeer(peer.getKey(), peer.getValue());
+                        }
+                      });
+                },
+                t -> logError("reconcilePeers() | failed:", t)));
+  }
+
+  // Close the Consumers of a peer that left, the server closed them along with its Producers.
+  @WorkerThread
+  private void closePeerConsumers(String peerId) {
+    for (ConsumerHolder holder : mConsumers.values()) {
+      if (holder.peerId.equals(peerId)) {
+        mConsumers.remove(holder.mConsumer.getId());
+        holder.mConsumer.close();
+        mStore.removeConsumer(peerId, holder.mConsumer.getId());
+      }
+    }
+  }
+
+  // Drop Consumers the server closed while signaling was down. Only a definite not found answer
+  // closes one, a timeout or a connection change says nothing about it.
+  @WorkerThread
+  private void reconcileConsumers() {
+    for (ConsumerHolder holder : mConsumers.values()) {
+      String consumerId = holder.mConsumer.getId();
+      mCompositeDisposable.add(
+          mProtoo
+              .request("getConsumerStats", req -> jsonPut(req, "consumerId", consumerId))
+              .observeOn(mWorkScheduler)
+              .subscribe(
+                  stats -> {},
+                  t -> {
+                    if (!isNotFound(t)) {
+                      Logger.w(TAG, "reconcileConsumers() | kept " + consumerId + ": " + t);
+                      return;
+                    }
+                    ConsumerHolder closed = mConsumers.remove(consumerId);
+                    if (closed == null) {
+                      return;
+                    }
+                    Logger.w(TAG, "reconcileConsumers() | consumer gone: " + consumerId);
+                    closed.mConsumer.close();
+                    mStore.removeConsumer(closed.peerId, consumerId);
+                  }));
+    }
+  }
+
+  // Whether the server rejected a request for an unknown id. The demo server rejects a request
+  // that throws with code 500 and the error message, "... not found" for a missing Consumer.
+  private static boolean isNotFound(Throwable t) {
+    if (!(t instanceof ProtooException)) {
+      return false;
+    }
+    ProtooException e = (ProtooException) t;
+    return e.getError() == 500
+        && e.getErrorReason() != null
+        && e.getErrorReason().contains("not found");
+  }
+
   private Protoo.Listener peerListener =
       new Protoo.Listener() {
         @Override
         public void onOpen() {
-          mWorkHandler.post(() -> joinImpl());
+          mWorkHandler.post(
+              () -> {
+                if (canResume()) {
+                  mProtoo.resumeSession();
+                  resumeImpl();
+                } else {
+                  // Drop whatever is left of a previous session, all will reCreated After ReJoin.
+                  disposeSession();
+                  joinImpl();
+                }
+              });
         }
 
         @Override
@@ -615,12 +911,8 @@ public class RoomClient extends RoomMessageHandler {
 
         @Override
         public void onNotification(@NonNull Message.Notification notification) {
-          Logger.d(
-              TAG,
-              "onNotification() "
-                  + notification.getMethod()
-                  + ", "
-                  + notification.getData().toString());
+          // Data is not logged: score notifications are frequent and serializing them is not free.
+          Logger.d(TAG, "onNotification() " + notification.getMethod());
           mWorkHandler.post(
               () -> {
                 try {
@@ -638,9 +930,12 @@ public class RoomClient extends RoomMessageHandler {
                 mStore.addNotify("error", "WebSocket disconnected");
                 mStore.setRoomState(ConnectionState.CONNECTING);
 
-                // Close All Transports created by device.
+                // Keep Transports alive to resume the session once signaling is back, if the
+                // server supports it. Otherwise close All Transports created by device.
                 // All will reCreated After ReJoin.
-                disposeTransportDevice();
+                if (!isResumeSupported()) {
+                  disposeSession();
+                }
               });
         }
 
@@ -662,66 +957,182 @@ public class RoomClient extends RoomMessageHandler {
   @WorkerThread
   private void joinImpl() {
     Logger.d(TAG, "joinImpl()");
+    mJoinTimings.start();
 
-    try {
-      mMediasoupDevice = new Device();
-      String routerRtpCapabilities = mProtoo.syncRequest("getRouterRtpCapabilities");
-      mMediasoupDevice.load(routerRtpCapabilities);
-      String rtpCapabilities = mMediasoupDevice.getRtpCapabilities();
+    // Local tracks don't depend on the server, create them while the requests are in flight.
+    if (mOptions.isProduce()) {
+      mWorkHandler.post(this::prepareLocalTracks);
+    }
 
-      // Create mediasoup Transport for sending (unless we don't want to produce).
-      if (mOptions.isProduce()) {
-        createSendTransport();
-      }
+    mMediasoupDevice = new Device();
+    mCachedRtpCapabilities = null;
+
+    // Transport creation on the server doesn't depend on the Device, so request the router
+    // RTP capabilities and both Transports concurrently.
+    final long requestsStart = JoinTimings.now();
+    mCompositeDisposable.add(
+        Observable.zip(
+                mProtoo
+                    .request("getRouterRtpCapabilities")
+                    .doOnNext(
+                        res ->
+                            mJoinTimings.record(
+                                JoinTimings.Stage.ROUTER_RTP_CAPABILITIES, requestsStart)),
+                mOptions.isProduce() ? requestSendTransport() : Observable.just(""),
+                mOptions.isConsume() ? requestRecvTransport() : Observable.just(""),
+                (routerRtpCapabilities, sendTransportInfo, recvTransportInfo) ->
+                    new String[] {routerRtpCapabilities, sendTransportInfo, recvTransportInfo})
+            .observeOn(mWorkScheduler)
+            .flatMap(
+                responses -> {
+                  loadRouterRtpCapabilities(responses[0], mCachedRtpCapabilities);
+
+                  // Create mediasoup Transport for sending (unless we don't want to produce).
+                  if (mOptions.isProduce()) {
+                    createSendTransport(responses[1]);
+                  }
+                  // Create mediasoup Transport for receiving (unless we don't want to consume).
+                  if (mOptions.isConsume()) {
+                    createRecvTransport(responses[2]);
+                  }
+                  mJoinTimings.record(JoinTimings.Stage.TRANSPORTS, requestsStart);
+
+                  // Join now into the room.
+                  // TODO(HaiyangWu): Don't send our RTP capabilities if we don't want to consume.
+                  String rtpCapabilities = mMediasoupDevice.getRtpCapabilities();
+                  long joinStart = JoinTimings.now();
+                  return mProtoo
+                      .request(
+                          "join",
+                          req -> {
+                            jsonPut(req, "displayName", mDisplayName);
+                            jsonPut(req, "device", mOptions.getDevice().toJSONObject());
+                            jsonPut(req, "rtpCapabilities", rawJson(rtpCapabilities));
+                            // TODO (HaiyangWu): add sctpCapabilities
+                            jsonPut(req, "sctpCapabilities", "");
+                          })
+                      .doOnNext(res -> mJoinTimings.record(JoinTimings.Stage.JOIN, joinStart));
+                })
+            .observeOn(mWorkScheduler)
+            .subscribe(this::onJoined, this::onJoinFailed));
+
+    // The requests are on their way, load the Device from the cached router RTP capabilities
+    // meanwhile. The responses are handled on this thread, so after the load; they revalidate it.
+    mCachedRtpCapabilities = loadCachedRtpCapabilities();
+  }
 
-      // Create mediasoup Transport for sending (unless we don't want to consume).
-      if (mOptions.isConsume()) {
-        createRecvTransport();
-      }
+  // Load mMediasoupDevice from the cache, return the loaded entry or null on cache miss.
+  @WorkerThread
+  private RtpCapabilitiesCache.Entry loadCachedRtpCapabilities() {
+    RtpCapabilitiesCache.Entry entry = mRtpCapabilitiesCache.get(mProtooHost);
+    if (entry == null) {
+      return null;
+    }
+    long loadStart = JoinTimings.now();
+    try {
+      mMediasoupDevice.load(entry.rtpCapabilities);
+      mJoinTimings.record(JoinTimings.Stage.DEVICE_LOAD, loadStart);
+      return entry;
+    } catch (MediasoupException e) {
+      logError("loadCachedRtpCapabilities() | failed:", e);
+      mRtpCapabilitiesCache.remove(mProtooHost);
+      mMediasoupDevice.dispose();
+      mMediasoupDevice = new Device();
+      return null;
+    }
+  }
 
-      // Join now into the room.
-      // TODO(HaiyangWu): Don't send our RTP capabilities if we don't want to consume.
-      String joinResponse =
-          mProtoo.syncRequest(
-              "join",
-              req -> {
-                jsonPut(req, "displayName", mDisplayName);
-                jsonPut(req, "device", mOptions.getDevice().toJSONObject());
-                jsonPut(req, "rtpCapabilities", toJsonObject(rtpCapabilities));
-                // TODO (HaiyangWu): add sctpCapabilities
-                jsonPut(req, "sctpCapabilities", "");
-              });
+  @WorkerThread
+  private void loadRouterRtpCapabilities(
+      String routerRtpCapabilities, RtpCapabilitiesCache.Entry cached) throws MediasoupException {
+    if (cached != null && cached.matches(routerRtpCapabilities)) {
+      Logger.d(TAG, "router RTP capabilities cache hit");
+      return;
+    }
 
-      mStore.setRoomState(ConnectionState.CONNECTED);
-      mStore.addNotify("You are in the room!", 3000);
+    if (cached != null) {
+      // Stale cache, start over with a fresh Device. No Transport has been created yet.
+      Logger.w(TAG, "router RTP capabilities changed, reloading Device");
+      mMediasoupDevice.dispose();
+      mMediasoupDevice = new Device();
+    }
+    long loadStart = JoinTimings.now();
+    mMediasoupDevice.load(routerRtpCapabilities);
+    mJoinTimings.record(JoinTimings.Stage.DEVICE_LOAD, loadStart);
+    mRtpCapabilitiesCache.put(mProtooHost, routerRtpCapabilities);
+  }
 
-      JSONObject resObj = JsonUtils.toJsonObject(joinResponse);
-      JSONArray peers = resObj.optJSONArray("peers");
-      for (int i = 0; peers != null && i < peers.length(); i++) {
-        JSONObject peer = peers.getJSONObject(i);
-        mStore.addPeer(peer.optString("id"), peer);
+  @WorkerThread
+  private void prepareLocalTracks() {
+    if (mClosed) {
+      return;
+    }
+    long start = JoinTimings.now();
+    try {
+      if (mLocalAudioTrack == null) {
+        mLocalAudioTrack = mPeerConnectionUtils.createAudioTrack(mContext, "mic");
+        mLocalAudioTrack.setEnabled(true);
       }
-
-      // Enable mic/webcam.
-      if (mOptions.isProduce()) {
-        boolean canSendMic = mMediasoupDevice.canProduce("audio");
-        boolean canSendCam = mMediasoupDevice.canProduce("video");
-        mStore.setMediaCapabilities(canSendMic, canSendCam);
-        mMainHandler.post(this::enableMic);
-        mMainHandler.post(this::enableCam);
+      if (mLocalVideoTrack == null) {
+        mLocalVideoTrack = mPeerConnectionUtils.createVideoTrack(mContext, "cam");
+        mLocalVideoTrack.setEnabled(true);
       }
     } catch (Exception e) {
-      e.printStackTrace();
-      logError("joinRoom() failed:", e);
-      if (TextUtils.isEmpty(e.getMessage())) {
-        mStore.addNotify("error", "Could not join the room, internal error");
-      } else {
-        mStore.addNotify("error", "Could not join the room: " + e.getMessage());
-      }
-      mMainHandler.post(this::close);
+      // enableMic()/enableCam() will retry and report the failure.
+      logError("prepareLocalTracks() | failed:", e);
+    }
+    mJoinTimings.record(JoinTimings.Stage.LOCAL_TRACKS, start);
+  }
+
+  @WorkerThread
+  private void onJoined(String joinResponse) throws MediasoupException {
+    if (mClosed) {
+      return;
+    }
+    mJoined = true;
+    mJoinTimings.finish();
+    Logger.d(TAG, "joined, " + mJoinTimings);
+    mStore.setRoomState(ConnectionState.CONNECTED);
+    mStore.addNotify("You are in the room!", 3000);
+
+    JSONObject resObj = JsonUtils.toJsonObject(joinResponse);
+    mServerResumable = resObj.optBoolean("resumable");
+    JSONArray peers = resObj.optJSONArray("peers");
+    // Publish Peers once for the whole room.
+    mStore.transaction(
+        () -> {
+          for (int i = 0; peers != null && i < peers.length(); i++) {
+            JSONObject peer = peers.optJSONObject(i);
+            if (peer != null) {
+              mStore.addPeer(peer.optString("id"), peer);
+            }
+          }
+        });
+
+    // Enable mic/webcam.
+    if (mOptions.isProduce()) {
+      boolean canSendMic = mMediasoupDevice.canProduce("audio");
+      boolean canSendCam = mMediasoupDevice.canProduce("video");
+      mStore.setMediaCapabilities(canSendMic, canSendCam);
+      mMainHandler.post(this::enableMic);
+      mMainHandler.post(this::enableCam);
     }
   }
 
+  @WorkerThread
+  private void onJoinFailed(Throwable throwable) {
+    if (mClosed) {
+      return;
+    }
+    logError("joinRoom() failed:", throwable);
+    if (TextUtils.isEmpty(throwable.getMessage())) {
+      mStore.addNotify("error", "Could not join the room, internal error");
+    } else {
+      mStore.addNotify("error", "Could not join the room: " + throwable.getMessage());
+    }
+    mMainHandler.post(this::close);
+  }
+
   @WorkerThread
   private void enableMicImpl() {
     Logger.d(TAG, "enableMicImpl()");
@@ -775,47 +1186,61 @@ public class RoomClient extends RoomMessageHandler {
       return;
     }
 
+    String producerId = mMicProducer.getId();
     mMicProducer.close();
-    mStore.removeProducer(mMicProducer.getId());
-
-    try {
-      mProtoo.syncRequest("closeProducer", req -> jsonPut(req, "producerId", mMicProducer.getId()));
-    } catch (ProtooException e) {
-      e.printStackTrace();
-      mStore.addNotify("error", "Error closing server-side mic Producer: " + e.getMessage());
-    }
+    mStore.removeProducer(producerId);
     mMicProducer = null;
+
+    mProtoo
+        .request("closeProducer", req -> jsonPut(req, "producerId", producerId))
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> {},
+            t ->
+                mStore.addNotify(
+                    "error", "Error closing server-side mic Producer: " + t.getMessage()));
   }
 
   @WorkerThread
   private void muteMicImpl() {
     Logger.d(TAG, "muteMicImpl()");
+    if (mMicProducer == null) {
+      return;
+    }
+    String producerId = mMicProducer.getId();
     mMicProducer.pause();
 
-    try {
-      mProtoo.syncRequest("pauseProducer", req -> jsonPut(req, "producerId", mMicProducer.getId()));
-      mStore.setProducerPaused(mMicProducer.getId());
-    } catch (ProtooException e) {
-      e.printStackTrace();
-      logError("muteMic() | failed:", e);
-      mStore.addNotify("error", "Error pausing server-side mic Producer: " + e.getMessage());
-    }
+    mProtoo
+        .request("pauseProducer", req -> jsonPut(req, "producerId", producerId))
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> mStore.setProducerPaused(producerId),
+            t -> {
+              logError("muteMic() | failed:", t);
+              mStore.addNotify(
+                  "error", "Error pausing server-side mic Producer: " + t.getMessage());
+            });
   }
 
   @WorkerThread
   private void unmuteMicImpl() {
     Logger.d(TAG, "unmuteMicImpl()");
+    if (mMicProducer == null) {
+      return;
+    }
+    String producerId = mMicProducer.getId();
     mMicProducer.resume();
 
-    try {
-      mProtoo.syncRequest(
-          "resumeProducer", req -> jsonPut(req, "producerId", mMicProducer.getId()));
-      mStore.setProducerResumed(mMicProducer.getId());
-    } catch (ProtooException e) {
-      e.printStackTrace();
-      logError("unmuteMic() | failed:", e);
-      mStore.addNotify("error", "Error resuming server-side mic Producer: " + e.getMessage());
-    }
+    mProtoo
+        .request("resumeProducer", req -> jsonPut(req, "producerId", producerId))
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> mStore.setProducerResumed(producerId),
+            t -> {
+              logError("unmuteMic() | failed:", t);
+              mStore.addNotify(
+                  "error", "Error resuming server-side mic Producer: " + t.getMessage());
+            });
   }
 
   @WorkerThread
@@ -840,21 +1265,29 @@ public class RoomClient extends RoomMessageHandler {
 
       if (mLocalVideoTrack == null) {
         mLocalVideoTrack = mPeerConnectionUtils.createVideoTrack(mContext, "cam");
-        mLocalVideoTrack.setEnabled(true);
       }
+      // The track outlives the Producer, only capture was stopped.
+      mLocalVideoTrack.setEnabled(true);
+      mPeerConnectionUtils.requestCapture(CAPTURE_OWNER_CAM);
+      EncodingProfile profile = mOptions.getCamEncodingProfile(getSendVideoCodec());
       mCamProducer =
           mSendTransport.produce(
               producer -> {
                 Logger.e(TAG, "onTransportClose(), camProducer");
                 if (mCamProducer != null) {
+                  mSendLayerController.stop();
+                  mPeerConnectionUtils.releaseCapture(CAPTURE_OWNER_CAM);
                   mStore.removeProducer(mCamProducer.getId());
                   mCamProducer = null;
                 }
               },
               mLocalVideoTrack,
-              null,
-              null);
+              profile != null ? profile.toEncodings() : null,
+              profile != null ? profile.getCodecOptions() : null);
       mStore.addProducer(mCamProducer);
+      int spatialLayers = LayerSelector.layerCounts(mCamProducer.getRtpParameters())[0];
+      mSendLayerController.start(
+          mWorkHandler, mCamProducer, spatialLayers, mOptions.isAdaptiveSendingLayer());
     } catch (MediasoupException e) {
       e.printStackTrace();
       logError("enableWebcam() | failed:", e);
@@ -862,7 +1295,27 @@ public class RoomClient extends RoomMessageHandler {
       if (mLocalVideoTrack != null) {
         mLocalVideoTrack.setEnabled(false);
       }
+      mPeerConnectionUtils.releaseCapture(CAPTURE_OWNER_CAM);
+    }
+  }
+
+  // Name ("vp8", "vp9", "h264"...) of the video codec produce() picks: the first one the device
+  // supports, in router order.
+  @WorkerThread
+  private String getSendVideoCodec() {
+    try {
+      JSONArray codecs =
+          new JSONObject(mMediasoupDevice.getRtpCapabilities()).optJSONArray("codecs");
+      for (int i = 0; codecs != null && i < codecs.length(); i++) {
+        String mimeType = codecs.getJSONObject(i).optString("mimeType").toLowerCase();
+        if (mimeType.startsWith("video/") && !mimeType.equals("video/rtx")) {
+          return mimeType.substring("video/".length());
+        }
+      }
+    } catch (JSONException | MediasoupException e) {
+      logError("getSendVideoCodec() | failed:", e);
     }
+    return "";
   }
 
   @WorkerThread
@@ -871,66 +1324,78 @@ public class RoomClient extends RoomMessageHandler {
     if (mCamProducer == null) {
       return;
     }
+    String producerId = mCamProducer.getId();
+    mSendLayerController.stop();
     mCamProducer.close();
-    mStore.removeProducer(mCamProducer.getId());
-
-    try {
-      mProtoo.syncRequest("closeProducer", req -> jsonPut(req, "producerId", mCamProducer.getId()));
-    } catch (ProtooException e) {
-      e.printStackTrace();
-      mStore.addNotify("error", "Error closing server-side webcam Producer: " + e.getMessage());
-    }
+    mStore.removeProducer(producerId);
     mCamProducer = null;
+    // Keep the source and track for the next enableCam(), just stop the camera.
+    mPeerConnectionUtils.releaseCapture(CAPTURE_OWNER_CAM);
+
+    mProtoo
+        .request("closeProducer", req -> jsonPut(req, "producerId", producerId))
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> {},
+            t ->
+                mStore.addNotify(
+                    "error", "Error closing server-side webcam Producer: " + t.getMessage()));
+  }
+
+  private Observable<String> requestSendTransport() {
+    Logger.d(TAG, "requestSendTransport()");
+    return mProtoo.request(
+        "createWebRtcTransport",
+        (req -> {
+          jsonPut(req, "forceTcp", mOptions.isForceTcp());
+          jsonPut(req, "producing", true);
+          jsonPut(req, "consuming", false);
+          // TODO: sctpCapabilities
+          jsonPut(req, "sctpCapabilities", "");
+        }));
   }
 
   @WorkerThread
-  private void createSendTransport() throws ProtooException, JSONException, MediasoupException {
+  private void createSendTransport(String res) throws MediasoupException {
     Logger.d(TAG, "createSendTransport()");
-    String res =
-        mProtoo.syncRequest(
-            "createWebRtcTransport",
-            (req -> {
-              jsonPut(req, "forceTcp", mOptions.isForceTcp());
-              jsonPut(req, "producing", true);
-              jsonPut(req, "consuming", false);
-              // TODO: sctpCapabilities
-              jsonPut(req, "sctpCapabilities", "");
-            }));
-    JSONObject info = new JSONObject(res);
-
-    Logger.d(TAG, "device#createSendTransport() " + info);
-    String id = info.optString("id");
-    String iceParameters = info.optString("iceParameters");
-    String iceCandidates = info.optString("iceCandidates");
-    String dtlsParameters = info.optString("dtlsParameters");
-    String sctpParameters = info.optString("sctpParameters");
+    Map<String, String> info = toRawMembers(res);
+
+    Logger.d(TAG, "device#createSendTransport() " + res);
+    String id = optRawString(info, "id");
+    String iceParameters = optRawString(info, "iceParameters");
+    String iceCandidates = optRawString(info, "iceCandidates");
+    String dtlsParameters = optRawString(info, "dtlsParameters");
+    String sctpParameters = optRawString(info, "sctpParameters");
 
     mSendTransport =
         mMediasoupDevice.createSendTransport(
             sendTransportListener, id, iceParameters, iceCandidates, dtlsParameters);
   }
 
+  private Observable<String> requestRecvTransport() {
+    Logger.d(TAG, "requestRecvTransport()");
+    return mProtoo.request(
+        "createWebRtcTransport",
+        req -> {
+          jsonPut(req, "forceTcp", mOptions.isForceTcp());
+          jsonPut(req, "producing", false);
+          jsonPut(req, "consuming", true);
+          // TODO (HaiyangWu): add sctpCapabilities
+          jsonPut(req, "sctpCapabilities", "");
+        });
+  }
+
   @WorkerThread
-  private void createRecvTransport() throws ProtooException, JSONException, MediasoupException {
+  private void createRecvTransport(String res) throws MediasoupException {
     Logger.d(TAG, "createRecvTransport()");
+    Map<String, String> info = toRawMembers(res);
 
-    String res =
-        mProtoo.syncRequest(
-            "createWebRtcTransport",
-            req -> {
-              jsonPut(req, "forceTcp", mOptions.isForceTcp());
-              jsonPut(req, "producing", false);
-              jsonPut(req, "consuming", true);
-              // TODO (HaiyangWu): add sctpCapabilities
-              jsonPut(req, "sctpCapabilities", "");
-            });
-    JSONObject info = new JSONObject(res);
-    Logger.d(TAG, "device#createRecvTransport() " + info);
-    String id = info.optString("id");
-    String iceParameters = info.optString("iceParameters");
-    String iceCandidates = info.optString("iceCandidates");
-    String dtlsParameters = info.optString("dtlsParameters");
-    String sctpParameters = info.optString("sctpParameters");
+    Logger.d(TAG, "device#createRecvTransport() " + res);
+    String id = optRawString(info, "id");
+    String iceParameters = optRawString(info, "iceParameters");
+    String iceCandidates = optRawString(info, "iceCandidates");
+    String dtlsParameters = optRawString(info, "dtlsParameters");
+    String sctpParameters = optRawString(info, "sctpParameters");
 
     mRecvTransport =
         mMediasoupDevice.createRecvTransport(
@@ -954,7 +1419,7 @@ public class RoomClient extends RoomMessageHandler {
                   req -> {
                     jsonPut(req, "transportId", transport.getId());
                     jsonPut(req, "kind", kind);
-                    jsonPut(req, "rtpParameters", toJsonObject(rtpParameters));
+                    jsonPut(req, "rtpParameters", rawJson(rtpParameters));
                     jsonPut(req, "appData", appData);
                   });
           Logger.d(listenerTAG, "producerId: " + producerId);
@@ -973,7 +1438,7 @@ public class RoomClient extends RoomMessageHandler {
                       "connectWebRtcTransport",
                       req -> {
                         jsonPut(req, "transportId", transport.getId());
-                        jsonPut(req, "dtlsParameters", toJsonObject(dtlsParameters));
+                        jsonPut(req, "dtlsParameters", rawJson(dtlsParameters));
                       })
                   .subscribe(
                       d -> Logger.d(listenerTAG, "connectWebRtcTransport res: " + d),
@@ -983,6 +1448,7 @@ public class RoomClient extends RoomMessageHandler {
         @Override
         public void onConnectionStateChange(Transport transport, String connectionState) {
           Logger.d(listenerTAG, "onConnectionStateChange: " + connectionState);
+          mSendTransportState = connectionState;
         }
       };
 
@@ -1003,7 +1469,7 @@ public class RoomClient extends RoomMessageHandler {
                       "connectWebRtcTransport",
                       req -> {
                         jsonPut(req, "transportId", transport.getId());
-                        jsonPut(req, "dtlsParameters", toJsonObject(dtlsParameters));
+                        jsonPut(req, "dtlsParameters", rawJson(dtlsParameters));
                       })
                   .subscribe(
                       d -> Logger.d(listenerTAG, "connectWebRtcTransport res: " + d),
@@ -1013,15 +1479,19 @@ public class RoomClient extends RoomMessageHandler {
         @Override
         public void onConnectionStateChange(Transport transport, String connectionState) {
           Logger.d(listenerTAG, "onConnectionStateChange: " + connectionState);
+          mRecvTransportState = connectionState;
         }
       };
 
+  // onProduce() must hand the producer id back to libmediasoupclient synchronously, so this is
+  // the one request that still blocks the calling thread.
+  @WorkerThread
   private String fetchProduceId(Protoo.RequestGenerator generator) {
     Logger.d(TAG, "fetchProduceId:()");
     try {
       String response = mProtoo.syncRequest("produce", generator);
-      return new JSONObject(response).optString("id");
-    } catch (ProtooException | JSONException e) {
+      return optRawString(toRawMembers(response), "id");
+    } catch (ProtooException e) {
       e.printStackTrace();
       logError("send produce request failed", e);
       return "";
@@ -1060,17 +1530,22 @@ public class RoomClient extends RoomMessageHandler {
               rtpParameters,
               appData);
 
-      mConsumers.put(consumer.getId(), new ConsumerHolder(peerId, consumer));
+      ConsumerHolder holder = new ConsumerHolder(peerId, consumer);
+      mConsumers.put(consumer.getId(), holder);
       mStore.addConsumer(peerId, type, consumer, producerPaused);
 
       // We are ready. Answer the protoo request so the server will
       // resume this Consumer (which was paused for now if video).
       handler.accept();
 
-      // If audio-only mode is enabled, pause it.
-      if ("video".equals(consumer.getKind()) && mStore.getMe().getValue().isAudioOnly()) {
-        pauseConsumer(consumer);
+      // Pause video in audio-only mode or off screen, audio while muted.
+      if ("video".equals(consumer.getKind())) {
+        syncVideoConsumerPaused(holder);
+      } else if (mStore.getMe().getValue().isAudioMuted()) {
+        pauseConsumer(holder);
       }
+      updatePreferredLayers(holder);
+      updatePriority(holder);
     } catch (Exception e) {
       e.printStackTrace();
       logError("\"newConsumer\" request failed:", e);
@@ -1084,38 +1559,172 @@ public class RoomClient extends RoomMessageHandler {
   }
 
   @WorkerThread
-  private void pauseConsumer(Consumer consumer) {
-    Logger.d(TAG, "pauseConsumer() " + consumer.getId());
-    if (consumer.isPaused()) {
+  private void pauseConsumer(ConsumerHolder holder) {
+    holder.wantedPaused = true;
+    applyConsumerPaused(holder);
+  }
+
+  @WorkerThread
+  private void resumeConsumer(ConsumerHolder holder) {
+    holder.wantedPaused = false;
+    applyConsumerPaused(holder);
+  }
+
+  // Send the wanted paused state of a Consumer. One pause or resume is in flight at most, its
+  // reply applies the state wanted by then: a mute and unmute within one round trip must not end
+  // with the late pause reply winning.
+  @WorkerThread
+  private void applyConsumerPaused(ConsumerHolder holder) {
+    Consumer consumer = holder.mConsumer;
+    if (holder.pauseInFlight
+        || consumer.isClosed()
+        || holder.wantedPaused == consumer.isPaused()) {
       return;
     }
+    boolean pause = holder.wantedPaused;
+    String method = pause ? "pauseConsumer" : "resumeConsumer";
+    Logger.d(TAG, method + "() " + consumer.getId());
+    holder.pauseInFlight = true;
+
+    mProtoo
+        .request(method, req -> jsonPut(req, "consumerId", consumer.getId()))
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> {
+              holder.pauseInFlight = false;
+              if (consumer.isClosed()) {
+                return;
+              }
+              if (pause) {
+                consumer.pause();
+                mStore.setConsumerPaused(consumer.getId(), "local");
+              } else {
+                consumer.resume();
+                mStore.setConsumerResumed(consumer.getId(), "local");
+                if ("video".equals(consumer.getKind())) {
+                  // Do not wait for the next periodic keyframe to show the tile again.
+                  requestKeyFrame(consumer);
+                }
+              }
+              applyConsumerPaused(holder);
+            },
+            t -> {
+              holder.pauseInFlight = false;
+              logError(method + "() | failed:", t);
+              mStore.addNotify(
+                  "error",
+                  "Error " + (pause ? "pausing" : "resuming") + " Consumer: " + t.getMessage());
+            });
+  }
 
-    try {
-      mProtoo.syncRequest("pauseConsumer", req -> jsonPut(req, "consumerId", consumer.getId()));
-      consumer.pause();
-      mStore.setConsumerPaused(consumer.getId(), "local");
-    } catch (ProtooException e) {
-      e.printStackTrace();
-      logError("pauseConsumer() | failed:", e);
-      mStore.addNotify("error", "Error pausing Consumer: " + e.getMessage());
+  @Override
+  @WorkerThread
+  void onActiveSpeakerChanged(@Nullable String peerId) {
+    // Nobody speaking keeps the ranking, the last speaker stays on top.
+    if (peerId == null || peerId.equals(mSpeakerRanking.peekFirst())) {
+      return;
+    }
+    mSpeakerRanking.remove(peerId);
+    mSpeakerRanking.addFirst(peerId);
+    if (mSpeakerRanking.size() > MAX_RANKED_SPEAKERS) {
+      mSpeakerRanking.removeLast();
     }
+    for (ConsumerHolder holder : mConsumers.values()) {
+      updatePreferredLayers(holder);
+      updatePriority(holder);
+    }
+  }
+
+  // Whether the video Consumers of peerId should flow: not in audio only mode and on screen.
+  @WorkerThread
+  private boolean isVideoWanted(String peerId) {
+    return !mStore.getMe().getValue().isAudioOnly() && !mHiddenPeerIds.contains(peerId);
   }
 
+  // Pause or resume a video Consumer to match isVideoWanted().
   @WorkerThread
-  private void resumeConsumer(Consumer consumer) {
-    Logger.d(TAG, "resumeConsumer() " + consumer.getId());
-    if (!consumer.isPaused()) {
+  private void syncVideoConsumerPaused(ConsumerHolder holder) {
+    if (!"video".equals(holder.mConsumer.getKind())) {
       return;
     }
+    if (isVideoWanted(holder.peerId)) {
+      resumeConsumer(holder);
+    } else {
+      pauseConsumer(holder);
+    }
+  }
 
-    try {
-      mProtoo.syncRequest("resumeConsumer", req -> jsonPut(req, "consumerId", consumer.getId()));
-      consumer.resume();
-      mStore.setConsumerResumed(consumer.getId(), "local");
-    } catch (Exception e) {
-      e.printStackTrace();
-      logError("resumeConsumer() | failed:", e);
-      mStore.addNotify("error", "Error resuming Consumer: " + e.getMessage());
+  // Ask for the layers matching the peer's tile height, unless they are already preferred.
+  @WorkerThread
+  private void updatePreferredLayers(ConsumerHolder holder) {
+    Integer height = mPeerVideoHeights.get(holder.peerId);
+    if (height == null
+        || holder.spatialLayers <= 1
+        || !"video".equals(holder.mConsumer.getKind())) {
+      return;
+    }
+    String consumerId = holder.mConsumer.getId();
+    int spatialLayer = LayerSelector.spatialLayerFor(height, holder.spatialLayers);
+    // Once somebody spoke, silent peers skip their top temporal layer to leave the downlink to
+    // the speakers.
+    int temporalLayer = holder.temporalLayers - 1;
+    if (!mSpeakerRanking.isEmpty() && !mSpeakerRanking.contains(holder.peerId)) {
+      temporalLayer = Math.max(0, temporalLayer - 1);
     }
+    Consumers.ConsumerWrapper wrapper = mStore.getConsumers().getHead().getConsumer(consumerId);
+    if (wrapper != null
+        && wrapper.getPreferredSpatialLayer() == spatialLayer
+        && wrapper.getPreferredTemporalLayer() == temporalLayer) {
+      return;
+    }
+    requestPreferredLayers(consumerId, spatialLayer, temporalLayer);
+  }
+
+  @WorkerThread
+  private void requestPreferredLayers(String consumerId, int spatialLayer, int temporalLayer) {
+    mProtoo
+        .request(
+            "setConsumerPreferredLayers",
+            req -> {
+              jsonPut(req, "consumerId", consumerId);
+              jsonPut(req, "spatialLayer", spatialLayer);
+              jsonPut(req, "temporalLayer", temporalLayer);
+            })
+        .observeOn(mWorkScheduler)
+        .subscribe(
+            res -> mStore.setConsumerPreferredLayers(consumerId, spatialLayer, temporalLayer),
+            t -> logError("setConsumerPreferredLayers() | failed:", t));
+  }
+
+  // Give the video of recent speakers a higher priority, so the server spends a limited downlink
+  // on them before the silent peers.
+  @WorkerThread
+  private void updatePriority(ConsumerHolder holder) {
+    if (!"video".equals(holder.mConsumer.getKind())) {
+      return;
+    }
+    int rank = mSpeakerRanking.indexOf(holder.peerId);
+    int priority =
+        rank == 0 ? PRIORITY_SPEAKER : rank > 0 ? PRIORITY_RECENT_SPEAKER : PRIORITY_SILENT;
+    if (holder.priority == priority) {
+      return;
+    }
+    holder.priority = priority;
+    String consumerId = holder.mConsumer.getId();
+    mProtoo
+        .request(
+            "setConsumerPriority",
+            req -> {
+              jsonPut(req, "consumerId", consumerId);
+              jsonPut(req, "priority", priority);
+            })
+        .subscribe(res -> {}, t -> logError("setConsumerPriority() | failed:", t));
+  }
+
+  @WorkerThread
+  private void requestKeyFrame(Consumer consumer) {
+    mProtoo
+        .request("requestConsumerKeyFrame", req -> jsonPut(req, "consumerId", consumer.getId()))
+        .subscribe(res -> {}, t -> logError("requestKeyFrame() | failed:", t));
   }
 }
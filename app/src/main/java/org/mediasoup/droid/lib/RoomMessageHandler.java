@@ -1,13 +1,21 @@
 package org.mediasoup.droid.lib;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.mediasoup.droid.Consumer;
 import org.mediasoup.droid.Logger;
+import org.mediasoup.droid.lib.Notifications.ActiveSpeaker;
+import org.mediasoup.droid.lib.Notifications.ConsumerEvent;
+import org.mediasoup.droid.lib.Notifications.ConsumerLayersChanged;
+import org.mediasoup.droid.lib.Notifications.ConsumerScore;
+import org.mediasoup.droid.lib.Notifications.DataConsumerClosed;
+import org.mediasoup.droid.lib.Notifications.NewPeer;
+import org.mediasoup.droid.lib.Notifications.PeerClosed;
+import org.mediasoup.droid.lib.Notifications.PeerDisplayNameChanged;
+import org.mediasoup.droid.lib.Notifications.ProducerScore;
 import org.mediasoup.droid.lib.lv.RoomStore;
 import org.protoojs.droid.Message;
 
@@ -22,128 +30,130 @@ class RoomMessageHandler {
   @NonNull final RoomStore mStore;
   // mediasoup Consumers.
   @NonNull final Map<String, ConsumerHolder> mConsumers;
+  // Notification method to typed decoder and handler.
+  @NonNull private final NotificationDispatcher mNotificationDispatcher;
+  // Merges bursts of score and layer notifications into batched store updates.
+  @NonNull final ScoreCoalescer mScoreCoalescer;
+  // Max spatial layer of the cam Producer, adapted to its producerScore.
+  @NonNull final SendLayerController mSendLayerController;
 
   static class ConsumerHolder {
     @NonNull final String peerId;
     @NonNull final Consumer mConsumer;
+    // Simulcast/SVC layer counts, 1 when not scalable.
+    final int spatialLayers;
+    final int temporalLayers;
+    // Priority last sent for this Consumer, 1 is the server default. Worker thread only.
+    int priority = 1;
+    // Local paused state wanted, applied once no pause or resume is in flight. Worker thread only.
+    boolean wantedPaused;
+    boolean pauseInFlight;
 
     ConsumerHolder(@NonNull String peerId, @NonNull Consumer consumer) {
       this.peerId = peerId;
       mConsumer = consumer;
+      int[] layerCounts = LayerSelector.layerCounts(consumer.getRtpParameters());
+      this.spatialLayers = layerCounts[0];
+      this.temporalLayers = layerCounts[1];
     }
   }
 
   RoomMessageHandler(@NonNull RoomStore store) {
     this.mStore = store;
     this.mConsumers = new ConcurrentHashMap<>();
+    this.mNotificationDispatcher = new NotificationDispatcher();
+    this.mScoreCoalescer = new ScoreCoalescer(store);
+    this.mSendLayerController = new SendLayerController();
+    registerNotificationHandlers();
   }
 
   @WorkerThread
   void handleNotification(Message.Notification notification) throws JSONException {
-    JSONObject data = notification.getData();
-    switch (notification.getMethod()) {
-      case "producerScore":
-        {
-          // {"producerId":"bdc2e83e-5294-451e-a986-a29c7d591d73","score":[{"score":10,"ssrc":196184265}]}
-          String producerId = data.getString("producerId");
-          JSONArray score = data.getJSONArray("score");
-          mStore.setProducerScore(producerId, score);
-          break;
-        }
-      case "newPeer":
-        {
-          String id = data.getString("id");
-          String displayName = data.optString("displayName");
-          mStore.addPeer(id, data);
-          mStore.addNotify(displayName + " has joined the room");
-          break;
-        }
-      case "peerClosed":
-        {
-          String peerId = data.getString("peerId");
-          mStore.removePeer(peerId);
-          break;
-        }
-      case "peerDisplayNameChanged":
-        {
-          String peerId = data.getString("peerId");
-          String displayName = data.optString("displayName");
-          String oldDisplayName = data.optString("oldDisplayName");
-          mStore.setPeerDisplayName(peerId, displayName);
-          mStore.addNotify(oldDisplayName + " is now " + displayName);
-          break;
-        }
-      case "consumerClosed":
-        {
-          String consumerId = data.getString("consumerId");
-          ConsumerHolder holder = mConsumers.remove(consumerId);
-          if (holder == null) {
-            break;
-          }
-          holder.mConsumer.close();
-          mConsumers.remove(consumerId);
-          mStore.removeConsumer(holder.peerId, holder.mConsumer.getId());
-          break;
-        }
-      case "consumerPaused":
-        {
-          String consumerId = data.getString("consumerId");
-          ConsumerHolder holder = mConsumers.get(consumerId);
-          if (holder == null) {
-            break;
-          }
-          mStore.setConsumerPaused(holder.mConsumer.getId(), "remote");
-          break;
-        }
-      case "consumerResumed":
-        {
-          String consumerId = data.getString("consumerId");
-          ConsumerHolder holder = mConsumers.get(consumerId);
-          if (holder == null) {
-            break;
-          }
-          mStore.setConsumerResumed(holder.mConsumer.getId(), "remote");
-          break;
-        }
-      case "consumerLayersChanged":
-        {
-          String consumerId = data.getString("consumerId");
-          int spatialLayer = data.optInt("spatialLayer");
-          int temporalLayer = data.optInt("temporalLayer");
-          ConsumerHolder holder = mConsumers.get(consumerId);
-          if (holder == null) {
-            break;
-          }
-          mStore.setConsumerCurrentLayers(consumerId, spatialLayer, temporalLayer);
-          break;
-        }
-      case "consumerScore":
-        {
-          String consumerId = data.getString("consumerId");
-          JSONArray score = data.optJSONArray("score");
-          ConsumerHolder holder = mConsumers.get(consumerId);
-          if (holder == null) {
-            break;
-          }
-          mStore.setConsumerScore(consumerId, score);
-          break;
-        }
-      case "dataConsumerClosed":
-        {
-          // TODO(HaiyangWu); support data consumer
-          // String dataConsumerId = data.getString("dataConsumerId");
-          break;
-        }
-      case "activeSpeaker":
-        {
-          String peerId = data.getString("peerId");
-          mStore.setRoomActiveSpeaker(peerId);
-          break;
-        }
-      default:
-        {
-          Logger.e(TAG, "unknown protoo notification.method " + notification.getMethod());
-        }
+    if (!mNotificationDispatcher.dispatch(notification)) {
+      Logger.e(TAG, "unknown protoo notification.method " + notification.getMethod());
     }
   }
+
+  private void registerNotificationHandlers() {
+    NotificationDispatcher d = mNotificationDispatcher;
+    d.register("producerScore", ProducerScore::decode, this::onProducerScore);
+    d.register("newPeer", NewPeer::decode, this::onNewPeer);
+    d.register("peerClosed", PeerClosed::decode, this::onPeerClosed);
+    d.register(
+        "peerDisplayNameChanged", PeerDisplayNameChanged::decode, this::onPeerDisplayNameChanged);
+    d.register("consumerClosed", ConsumerEvent::decode, this::onConsumerClosed);
+    d.register("consumerPaused", ConsumerEvent::decode, this::onConsumerPaused);
+    d.register("consumerResumed", ConsumerEvent::decode, this::onConsumerResumed);
+    d.register("consumerLayersChanged", ConsumerLayersChanged::decode, this::onConsumerLayers);
+    d.register("consumerScore", ConsumerScore::decode, this::onConsumerScore);
+    d.register("dataConsumerClosed", DataConsumerClosed::decode, this::onDataConsumerClosed);
+    d.register("activeSpeaker", ActiveSpeaker::decode, this::onActiveSpeaker);
+  }
+
+  private void onProducerScore(@NonNull ProducerScore event) {
+    mScoreCoalescer.setProducerScore(event.producerId, event.score);
+    mSendLayerController.onProducerScore(event.producerId, event.score);
+  }
+
+  private void onNewPeer(@NonNull NewPeer event) {
+    mStore.addPeer(event.id, event.info);
+    mStore.addNotify(event.displayName + " has joined the room");
+  }
+
+  private void onPeerClosed(@NonNull PeerClosed event) {
+    mStore.removePeer(event.peerId);
+  }
+
+  private void onPeerDisplayNameChanged(@NonNull PeerDisplayNameChanged event) {
+    mStore.setPeerDisplayName(event.peerId, event.displayName);
+    mStore.addNotify(event.oldDisplayName + " is now " + event.displayName);
+  }
+
+  private void onConsumerClosed(@NonNull ConsumerEvent event) {
+    ConsumerHolder holder = mConsumers.remove(event.consumerId);
+    if (holder == null) {
+      return;
+    }
+    holder.mConsumer.close();
+    mStore.removeConsumer(holder.peerId, holder.mConsumer.getId());
+  }
+
+  private void onConsumerPaused(@NonNull ConsumerEvent event) {
+    if (mConsumers.containsKey(event.consumerId)) {
+      mStore.setConsumerPaused(event.consumerId, "remote");
+    }
+  }
+
+  private void onConsumerResumed(@NonNull ConsumerEvent event) {
+    if (mConsumers.containsKey(event.consumerId)) {
+      mStore.setConsumerResumed(event.consumerId, "remote");
+    }
+  }
+
+  private void onConsumerLayers(@NonNull ConsumerLayersChanged event) {
+    if (mConsumers.containsKey(event.consumerId)) {
+      mScoreCoalescer.setConsumerCurrentLayers(
+          event.consumerId, event.spatialLayer, event.temporalLayer);
+    }
+  }
+
+  private void onConsumerScore(@NonNull ConsumerScore event) {
+    if (mConsumers.containsKey(event.consumerId)) {
+      mScoreCoalescer.setConsumerScore(event.consumerId, event.score);
+    }
+  }
+
+  private void onDataConsumerClosed(@NonNull DataConsumerClosed event) {
+    // TODO(HaiyangWu); support data consumer
+    Logger.d(TAG, "dataConsumerClosed() " + event.dataConsumerId);
+  }
+
+  private void onActiveSpeaker(@NonNull ActiveSpeaker event) {
+    mStore.setRoomActiveSpeaker(event.peerId);
+    onActiveSpeakerChanged(event.peerId);
+  }
+
+  // Called after the store got the new active speaker, null when nobody speaks.
+  @WorkerThread
+  void onActiveSpeakerChanged(@Nullable String peerId) {}
 }
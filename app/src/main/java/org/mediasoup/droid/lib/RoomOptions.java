@@ -1,9 +1,16 @@
 package org.mediasoup.droid.lib;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.mediasoup.droid.lib.model.DeviceInfo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class RoomOptions {
 
   // Device info.
@@ -16,6 +23,35 @@ public class RoomOptions {
   private boolean mConsume = true;
   // Whether we want DataChannels.
   private boolean mUseDataChannel;
+  // Whether we keep Transports alive and resume the session after a signaling reconnect. Only
+  // used with servers answering join with "resumable": true, others close the peer with its
+  // socket and get a full rejoin.
+  private boolean mResumeOnReconnect = true;
+  // Whether we offer binary (CBOR) signaling, plain JSON stays the fallback. Off by default: it
+  // saves bytes on the wire but adds a decode before the same JSON parsing.
+  private boolean mBinarySignaling;
+  // Window, in ms, during which score and layer notifications are merged into one store update.
+  // 0 applies each one right away.
+  private long mScoreCoalescingWindowMs = 16;
+  // Camera encoding by codec name ("vp8", "vp9", "h264"), a missing entry sends a single layer.
+  @NonNull private final Map<String, EncodingProfile> mCamEncodingProfiles = new HashMap<>();
+  // Whether the max sending spatial layer follows uplink quality.
+  private boolean mAdaptiveSendingLayer = true;
+  // Camera capture formats to pick from, highest first. Capture starts at 640x480@30.
+  @NonNull
+  private List<CaptureFormat> mCaptureFormats =
+      Arrays.asList(
+          new CaptureFormat(1280, 720, 30),
+          new CaptureFormat(960, 540, 30),
+          new CaptureFormat(640, 480, 30),
+          new CaptureFormat(480, 360, 20),
+          new CaptureFormat(320, 240, 15));
+
+  public RoomOptions() {
+    mCamEncodingProfiles.put("vp8", EncodingProfile.defaultSimulcast());
+    mCamEncodingProfiles.put("h264", EncodingProfile.defaultSimulcast());
+    mCamEncodingProfiles.put("vp9", EncodingProfile.defaultSvc());
+  }
 
   public RoomOptions setDevice(@NonNull DeviceInfo device) {
     this.mDevice = device;
@@ -42,6 +78,49 @@ public class RoomOptions {
     return this;
   }
 
+  public RoomOptions setResumeOnReconnect(boolean resumeOnReconnect) {
+    this.mResumeOnReconnect = resumeOnReconnect;
+    return this;
+  }
+
+  public RoomOptions setBinarySignaling(boolean binarySignaling) {
+    this.mBinarySignaling = binarySignaling;
+    return this;
+  }
+
+  public RoomOptions setScoreCoalescingWindowMs(long scoreCoalescingWindowMs) {
+    this.mScoreCoalescingWindowMs = scoreCoalescingWindowMs;
+    return this;
+  }
+
+  public RoomOptions setAdaptiveSendingLayer(boolean adaptiveSendingLayer) {
+    this.mAdaptiveSendingLayer = adaptiveSendingLayer;
+    return this;
+  }
+
+  /**
+   * Capture formats the camera may use, highest first. Must not be empty. Capture starts at the
+   * first one not above 640x480@30, rungs above it are only used on devices with 6+ cores.
+   */
+  public RoomOptions setCaptureFormats(@NonNull List<CaptureFormat> captureFormats) {
+    if (captureFormats.isEmpty()) {
+      throw new IllegalArgumentException("no capture format");
+    }
+    this.mCaptureFormats = new ArrayList<>(captureFormats);
+    return this;
+  }
+
+  /** Encode the camera with {@code profile} when it sends {@code codec}, null for one layer. */
+  public RoomOptions setCamEncodingProfile(
+      @NonNull String codec, @Nullable EncodingProfile profile) {
+    if (profile != null) {
+      this.mCamEncodingProfiles.put(codec.toLowerCase(), profile);
+    } else {
+      this.mCamEncodingProfiles.remove(codec.toLowerCase());
+    }
+    return this;
+  }
+
   @NonNull
   public DeviceInfo getDevice() {
     return mDevice;
@@ -62,4 +141,30 @@ public class RoomOptions {
   public boolean isUseDataChannel() {
     return mUseDataChannel;
   }
+
+  public boolean isResumeOnReconnect() {
+    return mResumeOnReconnect;
+  }
+
+  public boolean isBinarySignaling() {
+    return mBinarySignaling;
+  }
+
+  public long getScoreCoalescingWindowMs() {
+    return mScoreCoalescingWindowMs;
+  }
+
+  public boolean isAdaptiveSendingLayer() {
+    return mAdaptiveSendingLayer;
+  }
+
+  @NonNull
+  public List<CaptureFormat> getCaptureFormats() {
+    return mCaptureFormats;
+  }
+
+  @Nullable
+  public EncodingProfile getCamEncodingProfile(@NonNull String codec) {
+    return mCamEncodingProfiles.get(codec.toLowerCase());
+  }
 }
@@ -0,0 +1,54 @@
+package org.mediasoup.droid.lib;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * On-disk cache of router RTP capabilities, keyed by Protoo host.
+ *
+ * <p>Lets the Device be loaded while getRouterRtpCapabilities is in flight. The server sends no
+ * version of its capabilities, so the response is compared with the cached payload as a whole.
+ */
+@SuppressWarnings("WeakerAccess")
+public class RtpCapabilitiesCache {
+
+  private static final String PREFERENCES_NAME = "router_rtp_capabilities";
+  private static final String KEY_CAPABILITIES = ".capabilities";
+
+  public static class Entry {
+    @NonNull public final String rtpCapabilities;
+
+    Entry(@NonNull String rtpCapabilities) {
+      this.rtpCapabilities = rtpCapabilities;
+    }
+
+    /** Whether {@code rtpCapabilities} is the payload this entry was written from. */
+    public boolean matches(@NonNull String rtpCapabilities) {
+      return this.rtpCapabilities.equals(rtpCapabilities);
+    }
+  }
+
+  private final SharedPreferences mPreferences;
+
+  public RtpCapabilitiesCache(@NonNull Context context) {
+    mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+  }
+
+  @Nullable
+  public Entry get(@NonNull String host) {
+    String rtpCapabilities = mPreferences.getString(host + KEY_CAPABILITIES, null);
+    return TextUtils.isEmpty(rtpCapabilities) ? null : new Entry(rtpCapabilities);
+  }
+
+  public void put(@NonNull String host, @NonNull String rtpCapabilities) {
+    mPreferences.edit().putString(host + KEY_CAPABILITIES, rtpCapabilities).apply();
+  }
+
+  public void remove(@NonNull String host) {
+    mPreferences.edit().remove(host + KEY_CAPABILITIES).apply();
+  }
+}
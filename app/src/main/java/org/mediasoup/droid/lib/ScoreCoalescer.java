@@ -0,0 +1,110 @@
+package org.mediasoup.droid.lib;
+
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.mediasoup.droid.lib.lv.RoomStore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the latest producerScore, consumerScore and consumerLayersChanged per producer or consumer
+ * during a short window, then applies them to the RoomStore as one batch.
+ *
+ * <p>Worker thread only. Until {@link #start} is called, or with a window of 0, updates are applied
+ * right away.
+ */
+class ScoreCoalescer {
+
+  @NonNull private final RoomStore mStore;
+  @Nullable private Handler mHandler;
+  private long mWindowMs;
+
+  // Latest values not yet applied, keyed by producer or consumer id.
+  private final Map<String, JSONArray> mProducerScores = new HashMap<>();
+  private final Map<String, JSONArray> mConsumerScores = new HashMap<>();
+  // {spatialLayer, temporalLayer}.
+  private final Map<String, int[]> mConsumerLayers = new HashMap<>();
+  private boolean mFlushScheduled;
+
+  private final Runnable mFlushRunnable = this::flush;
+
+  ScoreCoalescer(@NonNull RoomStore store) {
+    mStore = store;
+  }
+
+  @WorkerThread
+  void start(@NonNull Handler handler, long windowMs) {
+    mHandler = handler;
+    mWindowMs = windowMs;
+  }
+
+  @WorkerThread
+  void setProducerScore(@NonNull String producerId, @NonNull JSONArray score) {
+    mProducerScores.put(producerId, score);
+    scheduleFlush();
+  }
+
+  @WorkerThread
+  void setConsumerScore(@NonNull String consumerId, @Nullable JSONArray score) {
+    mConsumerScores.put(consumerId, score);
+    scheduleFlush();
+  }
+
+  @WorkerThread
+  void setConsumerCurrentLayers(@NonNull String consumerId, int spatialLayer, int temporalLayer) {
+    mConsumerLayers.put(consumerId, new int[] {spatialLayer, temporalLayer});
+    scheduleFlush();
+  }
+
+  /** Drop pending updates, e.g. on close. */
+  @WorkerThread
+  void clear() {
+    if (mHandler != null) {
+      mHandler.removeCallbacks(mFlushRunnable);
+    }
+    mFlushScheduled = false;
+    mProducerScores.clear();
+    mConsumerScores.clear();
+    mConsumerLayers.clear();
+  }
+
+  private void scheduleFlush() {
+    if (mHandler == null || mWindowMs <= 0) {
+      flush();
+      return;
+    }
+    if (!mFlushScheduled) {
+      mFlushScheduled = true;
+      mHandler.postDelayed(mFlushRunnable, mWindowMs);
+    }
+  }
+
+  private void flush() {
+    mFlushScheduled = false;
+    if (mProducerScores.isEmpty() && mConsumerScores.isEmpty() && mConsumerLayers.isEmpty()) {
+      return;
+    }
+    mStore.transaction(
+        () -> {
+          for (Map.Entry<String, JSONArray> score : mProducerScores.entrySet()) {
+            mStore.setProducerScore(score.getKey(), score.getValue());
+          }
+          for (Map.Entry<String, JSONArray> score : mConsumerScores.entrySet()) {
+            mStore.setConsumerScore(score.getKey(), score.getValue());
+          }
+          for (Map.Entry<String, int[]> layers : mConsumerLayers.entrySet()) {
+            mStore.setConsumerCurrentLayers(
+                layers.getKey(), layers.getValue()[0], layers.getValue()[1]);
+          }
+        });
+    mProducerScores.clear();
+    mConsumerScores.clear();
+    mConsumerLayers.clear();
+  }
+}
@@ -0,0 +1,204 @@
+package org.mediasoup.droid.lib;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+import org.mediasoup.droid.MediasoupException;
+import org.mediasoup.droid.Producer;
+
+/**
+ * Drives the max spatial layer of the cam Producer.
+ *
+ * <p>The layer is capped by {@link #setLimit}. When adaptive, it also drops one layer when
+ * producerScore or the local outbound stats report a struggling uplink, and comes back up after a
+ * healthy period, which doubles each time a raise had to be undone. Worker thread only.
+ */
+class SendLayerController {
+
+  /** Told about each outbound stats sample of the cam Producer. */
+  interface Listener {
+
+    void onSample(boolean cpuLimited, boolean allLayersSent);
+  }
+
+  private static final String TAG = "SendLayerController";
+
+  // An encoding scored (0..10) below this by the server is degraded.
+  private static final int MIN_GOOD_SCORE = 7;
+  // Consecutive bad samples before shedding a layer.
+  private static final int BAD_SAMPLES_TO_LOWER = 2;
+  // Healthy time before raising a layer again, doubled on oscillation up to the max.
+  private static final long RAISE_HOLD_MS = 10000;
+  private static final long MAX_RAISE_HOLD_MS = 120000;
+  private static final long STATS_INTERVAL_MS = 2000;
+
+  @Nullable private Handler mHandler;
+  @Nullable private Producer mProducer;
+  @Nullable private Listener mListener;
+  private boolean mAdaptive;
+  private int mSpatialLayers;
+  // Highest layer allowed by the application, Integer.MAX_VALUE for all.
+  private int mLimit = Integer.MAX_VALUE;
+  // Highest layer the uplink is believed to sustain.
+  private int mLevel;
+  // Layer last given to the Producer, -1 if none yet.
+  private int mApplied = -1;
+  private int mBadSamples;
+  private long mLastChangeMs;
+  private long mLastRaiseMs;
+  private long mRaiseHoldMs = RAISE_HOLD_MS;
+
+  private final Runnable mPollStats = this::pollStats;
+
+  @WorkerThread
+  void start(
+      @NonNull Handler handler, @NonNull Producer producer, int spatialLayers, boolean adaptive) {
+    stop();
+    mHandler = handler;
+    mProducer = producer;
+    mSpatialLayers = spatialLayers;
+    mAdaptive = adaptive && spatialLayers > 1;
+    mLevel = spatialLayers - 1;
+    mLastChangeMs = SystemClock.elapsedRealtime();
+    if (mAdaptive || mListener != null) {
+      handler.postDelayed(mPollStats, STATS_INTERVAL_MS);
+    }
+    apply();
+  }
+
+  @WorkerThread
+  void setListener(@Nullable Listener listener) {
+    mListener = listener;
+  }
+
+  @WorkerThread
+  void stop() {
+    if (mHandler != null) {
+      mHandler.removeCallbacks(mPollStats);
+    }
+    mHandler = null;
+    mProducer = null;
+    mApplied = -1;
+    mBadSamples = 0;
+    mRaiseHoldMs = RAISE_HOLD_MS;
+  }
+
+  /** Cap the sending layer, kept across Producers. */
+  @WorkerThread
+  void setLimit(int spatialLayer) {
+    mLimit = Math.max(0, spatialLayer);
+    apply();
+  }
+
+  @WorkerThread
+  void onProducerScore(@NonNull String producerId, @NonNull JSONArray score) {
+    if (!mAdaptive || mProducer == null || !producerId.equals(mProducer.getId())) {
+      return;
+    }
+    // One entry per encoding, any degraded layer we still send means the uplink struggles.
+    boolean congested = false;
+    for (int i = 0; i < score.length(); i++) {
+      JSONObject encoding = score.optJSONObject(i);
+      if (encoding != null
+          && encoding.optInt("encodingIdx", 0) <= mApplied
+          && encoding.optInt("score", 10) < MIN_GOOD_SCORE) {
+        congested = true;
+        break;
+      }
+    }
+    onSample(congested);
+  }
+
+  private void pollStats() {
+    if (mProducer == null || mHandler == null) {
+      return;
+    }
+    try {
+      String stats = mProducer.getStats();
+      if (mAdaptive) {
+        onSample(hasQualityLimitation(stats, "bandwidth"));
+      }
+      if (mListener != null) {
+        boolean allLayersSent = mSpatialLayers <= 1 || mApplied == mSpatialLayers - 1;
+        mListener.onSample(hasQualityLimitation(stats, "cpu"), allLayersSent);
+      }
+    } catch (MediasoupException e) {
+      Logger.w(TAG, "getStats() failed: " + e.getMessage());
+    }
+    mHandler.postDelayed(mPollStats, STATS_INTERVAL_MS);
+  }
+
+  // Whether the encoder reports it is held back by reason ("bandwidth", "cpu") on any outbound
+  // stream.
+  private static boolean hasQualityLimitation(@Nullable String stats, @NonNull String reason) {
+    if (stats == null) {
+      return false;
+    }
+    try {
+      JSONArray reports = new JSONArray(stats);
+      for (int i = 0; i < reports.length(); i++) {
+        JSONObject report = reports.optJSONObject(i);
+        if (report != null
+            && "outbound-rtp".equals(report.optString("type"))
+            && reason.equals(report.optString("qualityLimitationReason"))) {
+          return true;
+        }
+      }
+    } catch (JSONException e) {
+      Logger.w(TAG, "unexpected stats format");
+    }
+    return false;
+  }
+
+  private void onSample(boolean congested) {
+    long now = SystemClock.elapsedRealtime();
+    if (congested) {
+      // Below the application limit, the level is the limit.
+      mLevel = Math.min(mLevel, mLimit);
+      if (++mBadSamples < BAD_SAMPLES_TO_LOWER || mLevel == 0) {
+        return;
+      }
+      if (now - mLastRaiseMs < mRaiseHoldMs) {
+        // The last raise did not hold, wait longer before the next one.
+        mRaiseHoldMs = Math.min(mRaiseHoldMs * 2, MAX_RAISE_HOLD_MS);
+      }
+      mLevel--;
+      mBadSamples = 0;
+      mLastChangeMs = now;
+      apply();
+      return;
+    }
+    mBadSamples = 0;
+    if (mLevel < mSpatialLayers - 1 && now - mLastChangeMs >= mRaiseHoldMs) {
+      mLevel++;
+      mLastChangeMs = now;
+      mLastRaiseMs = now;
+      apply();
+    }
+  }
+
+  private void apply() {
+    if (mProducer == null || mSpatialLayers <= 1) {
+      return;
+    }
+    int spatialLayer = Math.min(Math.min(mLevel, mLimit), mSpatialLayers - 1);
+    if (spatialLayer == mApplied) {
+      return;
+    }
+    try {
+      mProducer.setMaxSpatialLayer(spatialLayer);
+      Logger.d(TAG, "max spatial layer " + mApplied + " -> " + spatialLayer);
+      mApplied = spatialLayer;
+    } catch (MediasoupException e) {
+      Logger.e(TAG, "setMaxSpatialLayer() failed", e);
+    }
+  }
+}
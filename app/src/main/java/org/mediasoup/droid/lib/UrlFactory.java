@@ -8,6 +8,10 @@ public class UrlFactory {
   //  private static final String HOSTNAME = "192.168.1.103";
   private static final int PORT = 4443;
 
+  public static String getProtooHost() {
+    return String.format(Locale.US, "%s:%d", HOSTNAME, PORT);
+  }
+
   public static String getInvitationLink(String roomId, boolean forceH264, boolean forceVP9) {
     String url = String.format(Locale.US, "https://%s/?roomId=%s", HOSTNAME, roomId);
     if (forceH264) {
@@ -0,0 +1,54 @@
+package org.mediasoup.droid.lib.lv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.Supplier;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One LiveData per key (peer id, consumer id...), so an observer only hears about its own item.
+ *
+ * <p>A LiveData is created on first subscription and dropped, after a final null, when its key is
+ * removed. Thread safe.
+ */
+class KeyedLiveData<T> {
+
+  private final Map<String, MutableLiveData<T>> mLiveData = new HashMap<>();
+
+  /** LiveData of {@code key}, starting from the value given by {@code current}. */
+  @NonNull
+  synchronized LiveData<T> get(@NonNull String key, @NonNull Supplier<T> current) {
+    MutableLiveData<T> liveData = mLiveData.get(key);
+    if (liveData == null) {
+      liveData = new MutableLiveData<>(current.get());
+      mLiveData.put(key, liveData);
+    }
+    return liveData;
+  }
+
+  /** Post {@code value} if anyone subscribed to {@code key}. */
+  synchronized void post(@NonNull String key, @Nullable T value) {
+    MutableLiveData<T> liveData = mLiveData.get(key);
+    if (liveData != null) {
+      liveData.postValue(value);
+    }
+  }
+
+  synchronized void remove(@NonNull String key) {
+    MutableLiveData<T> liveData = mLiveData.remove(key);
+    if (liveData != null) {
+      liveData.postValue(null);
+    }
+  }
+
+  synchronized void clear() {
+    for (MutableLiveData<T> liveData : mLiveData.values()) {
+      liveData.postValue(null);
+    }
+    mLiveData.clear();
+  }
+}
@@ -2,6 +2,8 @@ package org.mediasoup.droid.lib.lv;
 
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import org.json.JSONArray;
@@ -13,10 +15,15 @@ import org.mediasoup.droid.lib.model.Consumers;
 import org.mediasoup.droid.lib.model.DeviceInfo;
 import org.mediasoup.droid.lib.model.Me;
 import org.mediasoup.droid.lib.model.Notify;
+import org.mediasoup.droid.lib.model.Peer;
 import org.mediasoup.droid.lib.model.Peers;
 import org.mediasoup.droid.lib.model.Producers;
 import org.mediasoup.droid.lib.model.RoomInfo;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Room state.
  *
@@ -53,8 +60,84 @@ public class RoomStore {
   // mediasoup-demo/app/lib/redux/reducers/notifications.js
   private MutableLiveData<Notify> notify = new MutableLiveData<>();
 
+  // Per-peer and per-consumer views of peers and consumers, see getPeer() and getConsumer().
+  private final KeyedLiveData<Peer> peerLiveData = new KeyedLiveData<>();
+  private final KeyedLiveData<Consumers.ConsumerWrapper> consumerLiveData = new KeyedLiveData<>();
+  // Keyed by peerId + "/" + kind. Entries are dropped with their consumer or peer.
+  private final KeyedLiveData<Consumers.ConsumerWrapper> peerConsumerLiveData =
+      new KeyedLiveData<>();
+
+  // Open transaction of the calling thread, if any.
+  private final ThreadLocal<Transaction> openTransaction = new ThreadLocal<>();
+  // Number of posts avoided by transactions.
+  private final AtomicLong savedPostCount = new AtomicLong();
+
+  private static class Transaction {
+    // Nesting depth, changes are published when the outermost transaction ends.
+    int depth;
+    int mutations;
+    final Set<SupplierMutableLiveData<?>> changed = new LinkedHashSet<>();
+  }
+
+  /**
+   * Apply the mutations made by {@code mutations} to the models, then publish each affected
+   * LiveData once. Transactions nest, only the outermost one publishes.
+   *
+   * <p>Only mutators called on the current thread join the transaction. Notifications are not
+   * batched.
+   */
+  public void transaction(@NonNull Runnable mutations) {
+    Transaction transaction = openTransaction.get();
+    if (transaction == null) {
+      transaction = new Transaction();
+      openTransaction.set(transaction);
+    }
+    transaction.depth++;
+    try {
+      mutations.run();
+    } finally {
+      if (--transaction.depth == 0) {
+        openTransaction.remove();
+        for (SupplierMutableLiveData<?> data : transaction.changed) {
+          data.publish();
+        }
+        savedPostCount.addAndGet(transaction.mutations - transaction.changed.size());
+      }
+    }
+  }
+
+  /** Number of LiveData posts saved by {@link #transaction} so far. */
+  public long getSavedPostCount() {
+    return savedPostCount.get();
+  }
+
+  // For the mutable models, RoomInfo and Me.
+  private <T> void post(
+      SupplierMutableLiveData<T> data, SupplierMutableLiveData.Invoker<T> invoker) {
+    update(
+        data,
+        value -> {
+          invoker.invokeAction(value);
+          return value;
+        });
+  }
+
+  // For the immutable models, Peers, Producers and Consumers.
+  private <T> void update(
+      SupplierMutableLiveData<T> data, SupplierMutableLiveData.Reducer<T> reducer) {
+    Transaction transaction = openTransaction.get();
+    if (transaction == null) {
+      data.update(reducer);
+      return;
+    }
+    data.reduce(reducer);
+    transaction.mutations++;
+    transaction.changed.add(data);
+  }
+
   public void setRoomUrl(String roomId, String url) {
-    roomInfo.postValue(
+    post(
+        roomInfo,
         roomInfo -> {
           roomInfo.setRoomId(roomId);
           roomInfo.setUrl(url);
@@ -62,30 +145,34 @@ public class RoomStore {
   }
 
   public void setRoomState(RoomClient.ConnectionState state) {
-    roomInfo.postValue(roomInfo -> roomInfo.setConnectionState(state));
+    post(roomInfo, roomInfo -> roomInfo.setConnectionState(state));
 
     if (RoomClient.ConnectionState.CLOSED.equals(state)) {
-      peers.postValue(Peers::clear);
-      me.postValue(Me::clear);
-      producers.postValue(Producers::clear);
-      consumers.postValue(Consumers::clear);
+      update(peers, Peers::clear);
+      post(me, Me::clear);
+      update(producers, Producers::clear);
+      update(consumers, Consumers::clear);
+      peerLiveData.clear();
+      consumerLiveData.clear();
+      peerConsumerLiveData.clear();
     }
   }
 
   public void setRoomActiveSpeaker(String peerId) {
-    roomInfo.postValue(roomInfo -> roomInfo.setActiveSpeakerId(peerId));
+    post(roomInfo, roomInfo -> roomInfo.setActiveSpeakerId(peerId));
   }
 
   public void setRoomStatsPeerId(String peerId) {
-    roomInfo.postValue(roomInfo -> roomInfo.setStatsPeerId(peerId));
+    post(roomInfo, roomInfo -> roomInfo.setStatsPeerId(peerId));
   }
 
   public void setRoomFaceDetection(boolean enable) {
-    roomInfo.postValue(roomInfo -> roomInfo.setFaceDetection(enable));
+    post(roomInfo, roomInfo -> roomInfo.setFaceDetection(enable));
   }
 
   public void setMe(String peerId, String displayName, DeviceInfo device) {
-    me.postValue(
+    post(
+        me,
         me -> {
           me.setId(peerId);
           me.setDisplayName(displayName);
@@ -94,7 +181,8 @@ public class RoomStore {
   }
 
   public void setMediaCapabilities(boolean canSendMic, boolean canSendCam) {
-    me.postValue(
+    post(
+        me,
         me -> {
           me.setCanSendMic(canSendMic);
           me.setCanSendCam(canSendCam);
@@ -102,51 +190,51 @@ public class RoomStore {
   }
 
   public void setCanChangeCam(boolean canChangeCam) {
-    me.postValue(me -> me.setCanSendCam(canChangeCam));
+    post(me, me -> me.setCanSendCam(canChangeCam));
   }
 
   public void setDisplayName(String displayName) {
-    me.postValue(me -> me.setDisplayName(displayName));
+    post(me, me -> me.setDisplayName(displayName));
   }
 
   public void setAudioOnlyState(boolean enabled) {
-    me.postValue(me -> me.setAudioOnly(enabled));
+    post(me, me -> me.setAudioOnly(enabled));
   }
 
   public void setAudioOnlyInProgress(boolean enabled) {
-    me.postValue(me -> me.setAudioOnlyInProgress(enabled));
+    post(me, me -> me.setAudioOnlyInProgress(enabled));
   }
 
   public void setAudioMutedState(boolean enabled) {
-    me.postValue(me -> me.setAudioMuted(enabled));
+    post(me, me -> me.setAudioMuted(enabled));
   }
 
   public void setRestartIceInProgress(boolean restartIceInProgress) {
-    me.postValue(me -> me.setRestartIceInProgress(restartIceInProgress));
+    post(me, me -> me.setRestartIceInProgress(restartIceInProgress));
   }
 
   public void setCamInProgress(boolean inProgress) {
-    me.postValue(me -> me.setCamInProgress(inProgress));
+    post(me, me -> me.setCamInProgress(inProgress));
   }
 
   public void addProducer(Producer producer) {
-    producers.postValue(producers -> producers.addProducer(producer));
+    update(producers, producers -> producers.addProducer(producer));
   }
 
   public void setProducerPaused(String producerId) {
-    producers.postValue(producers -> producers.setProducerPaused(producerId));
+    update(producers, producers -> producers.setProducerPaused(producerId));
   }
 
   public void setProducerResumed(String producerId) {
-    producers.postValue(producers -> producers.setProducerResumed(producerId));
+    update(producers, producers -> producers.setProducerResumed(producerId));
   }
 
   public void removeProducer(String producerId) {
-    producers.postValue(producers -> producers.removeProducer(producerId));
+    update(producers, producers -> producers.removeProducer(producerId));
   }
 
   public void setProducerScore(String producerId, JSONArray score) {
-    producers.postValue(producers -> producers.setProducerScore(producerId, score));
+    update(producers, producers -> producers.setProducerScore(producerId, score));
   }
 
   public void addDataProducer(Object dataProducer) {
@@ -158,15 +246,18 @@ public class RoomStore {
   }
 
   public void addPeer(String peerId, JSONObject peerInfo) {
-    peers.postValue(peersInfo -> peersInfo.addPeer(peerId, peerInfo));
+    update(peers, peersInfo -> peersInfo.addPeer(peerId, peerInfo));
+    publishPeer(peerId);
   }
 
   public void setPeerDisplayName(String peerId, String displayName) {
-    peers.postValue(peersInfo -> peersInfo.setPeerDisplayName(peerId, displayName));
+    update(peers, peersInfo -> peersInfo.setPeerDisplayName(peerId, displayName));
+    publishPeer(peerId);
   }
 
   public void removePeer(String peerId) {
-    roomInfo.postValue(
+    post(
+        roomInfo,
         roomInfo -> {
           if (!TextUtils.isEmpty(peerId) && peerId.equals(roomInfo.getActiveSpeakerId())) {
             roomInfo.setActiveSpeakerId(null);
@@ -175,34 +266,92 @@ public class RoomStore {
             roomInfo.setStatsPeerId(null);
           }
         });
-    peers.postValue(peersInfo -> peersInfo.removePeer(peerId));
+    Peer removed = peers.getHead().getPeer(peerId);
+    update(peers, peersInfo -> peersInfo.removePeer(peerId));
+    peerLiveData.remove(peerId);
+    if (removed != null) {
+      for (String consumerId : removed.getConsumers()) {
+        consumerLiveData.remove(consumerId);
+      }
+    }
+    peerConsumerLiveData.remove(peerConsumerKey(peerId, "audio"));
+    peerConsumerLiveData.remove(peerConsumerKey(peerId, "video"));
   }
 
   public void addConsumer(String peerId, String type, Consumer consumer, boolean remotelyPaused) {
-    consumers.postValue(consumers -> consumers.addConsumer(type, consumer, remotelyPaused));
-    peers.postValue(peers -> peers.addConsumer(peerId, consumer));
+    update(
+        consumers, consumers -> consumers.addConsumer(peerId, type, consumer, remotelyPaused));
+    publishConsumer(consumer.getId());
+    update(peers, peers -> peers.addConsumer(peerId, consumer));
+    publishPeer(peerId);
   }
 
   public void removeConsumer(String peerId, String consumerId) {
-    consumers.postValue(consumers -> consumers.removeConsumer(consumerId));
-    peers.postValue(peers -> peers.removeConsumer(peerId, consumerId));
+    Consumers.ConsumerWrapper removed = consumers.getHead().getConsumer(consumerId);
+    update(consumers, consumers -> consumers.removeConsumer(consumerId));
+    update(peers, peers -> peers.removeConsumer(peerId, consumerId));
+    consumerLiveData.remove(consumerId);
+    if (removed != null) {
+      String key = peerConsumerKey(removed.getPeerId(), removed.getKind());
+      Consumers.ConsumerWrapper replacement =
+          consumers.getHead().getConsumer(removed.getPeerId(), removed.getKind());
+      if (replacement != null) {
+        peerConsumerLiveData.post(key, replacement);
+      } else {
+        peerConsumerLiveData.remove(key);
+      }
+    }
+    publishPeer(peerId);
   }
 
   public void setConsumerPaused(String consumerId, String originator) {
-    consumers.postValue(consumers -> consumers.setConsumerPaused(consumerId, originator));
+    update(consumers, consumers -> consumers.setConsumerPaused(consumerId, originator));
+    publishConsumer(consumerId);
   }
 
   public void setConsumerResumed(String consumerId, String originator) {
-    consumers.postValue(consumers -> consumers.setConsumerResumed(consumerId, originator));
+    update(consumers, consumers -> consumers.setConsumerResumed(consumerId, originator));
+    publishConsumer(consumerId);
   }
 
   public void setConsumerCurrentLayers(String consumerId, int spatialLayer, int temporalLayer) {
-    consumers.postValue(
+    update(
+        consumers,
         consumers -> consumers.setConsumerCurrentLayers(consumerId, spatialLayer, temporalLayer));
+    publishConsumer(consumerId);
+  }
+
+  public void setConsumerPreferredLayers(String consumerId, int spatialLayer, int temporalLayer) {
+    update(
+        consumers,
+        consumers -> consumers.setConsumerPreferredLayers(consumerId, spatialLayer, temporalLayer));
+    publishConsumer(consumerId);
   }
 
   public void setConsumerScore(String consumerId, JSONArray score) {
-    consumers.postValue(consumers -> consumers.setConsumerScore(consumerId, score));
+    update(consumers, consumers -> consumers.setConsumerScore(consumerId, score));
+    publishConsumer(consumerId);
+  }
+
+  private void publishPeer(String peerId) {
+    peerLiveData.post(peerId, peers.getHead().getPeer(peerId));
+  }
+
+  private void publishConsumer(String consumerId) {
+    Consumers.ConsumerWrapper wrapper = consumers.getHead().getConsumer(consumerId);
+    consumerLiveData.post(consumerId, wrapper);
+    if (wrapper != null) {
+      publishPeerConsumer(wrapper.getPeerId(), wrapper.getKind());
+    }
+  }
+
+  private void publishPeerConsumer(String peerId, String kind) {
+    peerConsumerLiveData.post(
+        peerConsumerKey(peerId, kind), consumers.getHead().getConsumer(peerId, kind));
+  }
+
+  private static String peerConsumerKey(String peerId, String kind) {
+    return peerId + "/" + kind;
   }
 
   public void addDataConsumer(String peerId, Object dataConsumer) {
@@ -252,4 +401,33 @@ public class RoomStore {
   public SupplierMutableLiveData<Consumers> getConsumers() {
     return consumers;
   }
+
+  /**
+   * State of a single peer, null once it is gone.
+   *
+   * <p>Only posted when this peer changes, unlike {@link #getPeers()}.
+   */
+  public LiveData<Peer> getPeer(@NonNull String peerId) {
+    return peerLiveData.get(peerId, () -> peers.getHead().getPeer(peerId));
+  }
+
+  /**
+   * State of a single consumer, null once it is gone.
+   *
+   * <p>Only posted when this consumer changes, unlike {@link #getConsumers()}.
+   */
+  public LiveData<Consumers.ConsumerWrapper> getConsumer(@NonNull String consumerId) {
+    return consumerLiveData.get(consumerId, () -> consumers.getHead().getConsumer(consumerId));
+  }
+
+  /**
+   * The consumer of {@code kind} ("audio" or "video") of a peer, looked up by index.
+   *
+   * <p>Only posted when that consumer changes or is replaced.
+   */
+  public LiveData<Consumers.ConsumerWrapper> getConsumer(
+      @NonNull String peerId, @NonNull String kind) {
+    return peerConsumerLiveData.get(
+        peerConsumerKey(peerId, kind), () -> consumers.getHead().getConsumer(peerId, kind));
+  }
 }
@@ -7,8 +7,12 @@ import androidx.lifecycle.MutableLiveData;
 @SuppressWarnings("WeakerAccess")
 public class SupplierMutableLiveData<T> extends MutableLiveData<T> {
 
+  // Latest value, ahead of getValue() until posted values reach the main thread.
+  @NonNull private volatile T mHead;
+
   public SupplierMutableLiveData(@NonNull Supplier<T> supplier) {
-    setValue(supplier.get());
+    mHead = supplier.get();
+    setValue(mHead);
   }
 
   @NonNull
@@ -18,13 +22,44 @@ public class SupplierMutableLiveData<T> extends MutableLiveData<T> {
     return super.getValue();
   }
 
+  /** Latest value, including changes not delivered to observers yet. */
+  @NonNull
+  public T getHead() {
+    return mHead;
+  }
+
   public interface Invoker<T> {
     void invokeAction(T value);
   }
 
+  /** Computes the next value of an immutable model, without modifying the current one. */
+  public interface Reducer<T> {
+    @NonNull
+    T reduce(@NonNull T value);
+  }
+
   public void postValue(@NonNull Invoker<T> invoker) {
-    T value = getValue();
-    invoker.invokeAction(value);
-    postValue(value);
+    reduce(
+        value -> {
+          invoker.invokeAction(value);
+          return value;
+        });
+    publish();
+  }
+
+  /** Replace the value with the one computed by {@code reducer} and post it. */
+  public void update(@NonNull Reducer<T> reducer) {
+    reduce(reducer);
+    publish();
+  }
+
+  /** Replace the value with the one computed by {@code reducer}, without posting it. */
+  public synchronized void reduce(@NonNull Reducer<T> reducer) {
+    mHead = reducer.reduce(mHead);
+  }
+
+  /** Post the latest value. */
+  public void publish() {
+    postValue(mHead);
   }
 }
@@ -3,32 +3,131 @@ package org.mediasoup.droid.lib.model;
 import org.json.JSONArray;
 import org.mediasoup.droid.Consumer;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Immutable snapshot of the Consumers.
+ *
+ * <p>Changes return a new snapshot which shares the unchanged ConsumerWrappers with this one, so
+ * an unchanged Consumer keeps the same ConsumerWrapper instance across snapshots. Consumers are
+ * kept in a {@link PartitionedMap}: a score, layer or pause update copies one partition, not all
+ * of them. The peer/kind index is copied in full, but only on add and remove.
+ */
 public class Consumers {
 
   public static class ConsumerWrapper {
 
-    private String mType;
-    private boolean mLocallyPaused;
-    private boolean mRemotelyPaused;
-    private int mSpatialLayer;
-    private int mTemporalLayer;
-    private Consumer mConsumer;
-    private JSONArray mScore;
-    private int mPreferredSpatialLayer;
-    private int mPreferredTemporalLayer;
-
-    ConsumerWrapper(String type, boolean remotelyPaused, Consumer consumer) {
+    private final String mPeerId;
+    // Consumer kind, read once so lookups by kind do not go through JNI.
+    private final String mKind;
+    private final String mType;
+    private final boolean mLocallyPaused;
+    private final boolean mRemotelyPaused;
+    private final int mSpatialLayer;
+    private final int mTemporalLayer;
+    private final Consumer mConsumer;
+    private final JSONArray mScore;
+    private final int mPreferredSpatialLayer;
+    private final int mPreferredTemporalLayer;
+
+    ConsumerWrapper(String peerId, String type, boolean remotelyPaused, Consumer consumer) {
+      this(peerId, consumer.getKind(), type, false, remotelyPaused, -1, -1, consumer, null, -1, -1);
+    }
+
+    private ConsumerWrapper(
+        String peerId,
+        String kind,
+        String type,
+        boolean locallyPaused,
+        boolean remotelyPaused,
+        int spatialLayer,
+        int temporalLayer,
+        Consumer consumer,
+        JSONArray score,
+        int preferredSpatialLayer,
+        int preferredTemporalLayer) {
+      mPeerId = peerId;
+      mKind = kind;
       mType = type;
-      mLocallyPaused = false;
+      mLocallyPaused = locallyPaused;
       mRemotelyPaused = remotelyPaused;
-      mSpatialLayer = -1;
-      mTemporalLayer = -1;
+      mSpatialLayer = spatialLayer;
+      mTemporalLayer = temporalLayer;
       mConsumer = consumer;
-      mPreferredSpatialLayer = -1;
-      mPreferredTemporalLayer = -1;
+      mScore = score;
+      mPreferredSpatialLayer = preferredSpatialLayer;
+      mPreferredTemporalLayer = preferredTemporalLayer;
+    }
+
+    private ConsumerWrapper withPaused(String originator, boolean paused) {
+      boolean local = "local".equals(originator);
+      return new ConsumerWrapper(
+          mPeerId,
+          mKind,
+          mType,
+          local ? paused : mLocallyPaused,
+          local ? mRemotelyPaused : paused,
+          mSpatialLayer,
+          mTemporalLayer,
+          mConsumer,
+          mScore,
+          mPreferredSpatialLayer,
+          mPreferredTemporalLayer);
+    }
+
+    private ConsumerWrapper withCurrentLayers(int spatialLayer, int temporalLayer) {
+      return new ConsumerWrapper(
+          mPeerId,
+          mKind,
+          mType,
+          mLocallyPaused,
+          mRemotelyPaused,
+          spatialLayer,
+          temporalLayer,
+          mConsumer,
+          mScore,
+          mPreferredSpatialLayer,
+          mPreferredTemporalLayer);
+    }
+
+    private ConsumerWrapper withScore(JSONArray score) {
+      return new ConsumerWrapper(
+          mPeerId,
+          mKind,
+          mType,
+          mLocallyPaused,
+          mRemotelyPaused,
+          mSpatialLayer,
+          mTemporalLayer,
+          mConsumer,
+          score,
+          mPreferredSpatialLayer,
+          mPreferredTemporalLayer);
+    }
+
+    private ConsumerWrapper withPreferredLayers(int spatialLayer, int temporalLayer) {
+      return new ConsumerWrapper(
+          mPeerId,
+          mKind,
+          mType,
+          mLocallyPaused,
+          mRemotelyPaused,
+          mSpatialLayer,
+          mTemporalLayer,
+          mConsumer,
+          mScore,
+          spatialLayer,
+          temporalLayer);
+    }
+
+    public String getPeerId() {
+      return mPeerId;
+    }
+
+    public String getKind() {
+      return mKind;
     }
 
     public String getType() {
@@ -68,69 +167,131 @@ public class Consumers {
     }
   }
 
-  private final Map<String, ConsumerWrapper> consumers;
+  private final PartitionedMap<ConsumerWrapper> consumers;
+  // peerId -> kind -> consumerId. Only changes on add/remove, so score or layer updates share it.
+  private final Map<String, Map<String, String>> consumerIdsByPeer;
 
   public Consumers() {
-    consumers = new ConcurrentHashMap<>();
+    consumers = PartitionedMap.empty();
+    consumerIdsByPeer = Collections.emptyMap();
   }
 
-  public void addConsumer(String type, Consumer consumer, boolean remotelyPaused) {
-    consumers.put(consumer.getId(), new ConsumerWrapper(type, remotelyPaused, consumer));
+  private Consumers(
+      PartitionedMap<ConsumerWrapper> consumers,
+      Map<String, Map<String, String>> consumerIdsByPeer) {
+    this.consumers = consumers;
+    this.consumerIdsByPeer = consumerIdsByPeer;
   }
 
-  public void removeConsumer(String consumerId) {
-    consumers.remove(consumerId);
+  public Consumers addConsumer(
+      String peerId, String type, Consumer consumer, boolean remotelyPaused) {
+    ConsumerWrapper wrapper = new ConsumerWrapper(peerId, type, remotelyPaused, consumer);
+    String consumerId = consumer.getId();
+    return new Consumers(
+        consumers.put(consumerId, wrapper), index(peerId, wrapper.mKind, consumerId));
   }
 
-  public void setConsumerPaused(String consumerId, String originator) {
+  public Consumers removeConsumer(String consumerId) {
     ConsumerWrapper wrapper = consumers.get(consumerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
-
-    if ("local".equals(originator)) {
-      wrapper.mLocallyPaused = true;
-    } else {
-      wrapper.mRemotelyPaused = true;
+    PartitionedMap<ConsumerWrapper> copy = consumers.remove(consumerId);
+    Map<String, String> ids = consumerIdsByPeer.get(wrapper.mPeerId);
+    if (ids == null || !consumerId.equals(ids.get(wrapper.mKind))) {
+      return new Consumers(copy, consumerIdsByPeer);
     }
+    // Fall back to another Consumer of the same peer and kind, if any.
+    String replacementId = null;
+    for (Map.Entry<String, ConsumerWrapper> entry : copy.entries()) {
+      ConsumerWrapper other = entry.getValue();
+      if (other.mPeerId.equals(wrapper.mPeerId) && other.mKind.equals(wrapper.mKind)) {
+        replacementId = entry.getKey();
+        break;
+      }
+    }
+    return new Consumers(copy, index(wrapper.mPeerId, wrapper.mKind, replacementId));
   }
 
-  public void setConsumerResumed(String consumerId, String originator) {
+  public Consumers setConsumerPaused(String consumerId, String originator) {
     ConsumerWrapper wrapper = consumers.get(consumerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
+    return replace(consumerId, wrapper.withPaused(originator, true));
+  }
 
-    if ("local".equals(originator)) {
-      wrapper.mLocallyPaused = false;
-    } else {
-      wrapper.mRemotelyPaused = false;
+  public Consumers setConsumerResumed(String consumerId, String originator) {
+    ConsumerWrapper wrapper = consumers.get(consumerId);
+    if (wrapper == null) {
+      return this;
     }
+    return replace(consumerId, wrapper.withPaused(originator, false));
   }
 
-  public void setConsumerCurrentLayers(String consumerId, int spatialLayer, int temporalLayer) {
+  public Consumers setConsumerCurrentLayers(
+      String consumerId, int spatialLayer, int temporalLayer) {
     ConsumerWrapper wrapper = consumers.get(consumerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
-    wrapper.mSpatialLayer = spatialLayer;
-    wrapper.mTemporalLayer = temporalLayer;
+    return replace(consumerId, wrapper.withCurrentLayers(spatialLayer, temporalLayer));
   }
 
-  public void setConsumerScore(String consumerId, JSONArray score) {
+  public Consumers setConsumerPreferredLayers(
+      String consumerId, int spatialLayer, int temporalLayer) {
     ConsumerWrapper wrapper = consumers.get(consumerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
+    return replace(consumerId, wrapper.withPreferredLayers(spatialLayer, temporalLayer));
+  }
 
-    wrapper.mScore = score;
+  public Consumers setConsumerScore(String consumerId, JSONArray score) {
+    ConsumerWrapper wrapper = consumers.get(consumerId);
+    if (wrapper == null) {
+      return this;
+    }
+    return replace(consumerId, wrapper.withScore(score));
   }
 
   public ConsumerWrapper getConsumer(String consumerId) {
     return consumers.get(consumerId);
   }
 
-  public void clear() {
-    consumers.clear();
+  /** The Consumer of {@code kind} ("audio" or "video") of the given peer, in O(1). */
+  public ConsumerWrapper getConsumer(String peerId, String kind) {
+    Map<String, String> ids = consumerIdsByPeer.get(peerId);
+    if (ids == null) {
+      return null;
+    }
+    String consumerId = ids.get(kind);
+    return consumerId != null ? consumers.get(consumerId) : null;
+  }
+
+  public Consumers clear() {
+    return consumers.isEmpty() ? this : new Consumers();
+  }
+
+  private Consumers replace(String consumerId, ConsumerWrapper wrapper) {
+    return new Consumers(consumers.put(consumerId, wrapper), consumerIdsByPeer);
+  }
+
+  // Copy of consumerIdsByPeer with peerId/kind pointing to consumerId, or removed if null.
+  private Map<String, Map<String, String>> index(String peerId, String kind, String consumerId) {
+    Map<String, Map<String, String>> copy = new HashMap<>(consumerIdsByPeer);
+    Map<String, String> ids = consumerIdsByPeer.get(peerId);
+    Map<String, String> idsCopy = ids != null ? new HashMap<>(ids) : new HashMap<>();
+    if (consumerId != null) {
+      idsCopy.put(kind, consumerId);
+    } else {
+      idsCopy.remove(kind);
+    }
+    if (idsCopy.isEmpty()) {
+      copy.remove(peerId);
+    } else {
+      copy.put(peerId, idsCopy);
+    }
+    return copy;
   }
 }
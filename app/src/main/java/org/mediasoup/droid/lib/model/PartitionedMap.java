@@ -0,0 +1,104 @@
+package org.mediasoup.droid.lib.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable String keyed map split into fixed partitions by key hash.
+ *
+ * <p>A change copies the partition of its key and the partition list, and shares all other
+ * partitions with this map: about n / {@link #PARTITIONS} + {@link #PARTITIONS} work instead of n.
+ * Iteration order is unspecified.
+ */
+final class PartitionedMap<V> {
+
+  // Power of two, so the partition is a mask of the key hash.
+  static final int PARTITIONS = 16;
+
+  private static final PartitionedMap<Object> EMPTY = new PartitionedMap<>(emptyPartitions(), 0);
+
+  // Never modified once the map is built, neither the list nor the partitions.
+  @NonNull private final List<Map<String, V>> mPartitions;
+  private final int mSize;
+
+  private PartitionedMap(@NonNull List<Map<String, V>> partitions, int size) {
+    mPartitions = partitions;
+    mSize = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @NonNull
+  static <V> PartitionedMap<V> empty() {
+    return (PartitionedMap<V>) EMPTY;
+  }
+
+  private static <V> List<Map<String, V>> emptyPartitions() {
+    List<Map<String, V>> partitions = new ArrayList<>(PARTITIONS);
+    for (int i = 0; i < PARTITIONS; i++) {
+      partitions.add(Collections.<String, V>emptyMap());
+    }
+    return partitions;
+  }
+
+  private static int partitionOf(@NonNull String key) {
+    int hash = key.hashCode();
+    // Spread the high bits, like HashMap does.
+    return (hash ^ (hash >>> 16)) & (PARTITIONS - 1);
+  }
+
+  @Nullable
+  V get(@NonNull String key) {
+    return mPartitions.get(partitionOf(key)).get(key);
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  /** A map with {@code key} set to {@code value}. */
+  @NonNull
+  PartitionedMap<V> put(@NonNull String key, @NonNull V value) {
+    int index = partitionOf(key);
+    Map<String, V> partition = new HashMap<>(mPartitions.get(index));
+    boolean added = partition.put(key, value) == null;
+    return new PartitionedMap<>(with(index, partition), added ? mSize + 1 : mSize);
+  }
+
+  /** A map without {@code key}, this one if it has no such key. */
+  @NonNull
+  PartitionedMap<V> remove(@NonNull String key) {
+    int index = partitionOf(key);
+    if (!mPartitions.get(index).containsKey(key)) {
+      return this;
+    }
+    Map<String, V> partition = new HashMap<>(mPartitions.get(index));
+    partition.remove(key);
+    return new PartitionedMap<>(with(index, partition), mSize - 1);
+  }
+
+  /** All entries, in O(n). */
+  @NonNull
+  List<Map.Entry<String, V>> entries() {
+    List<Map.Entry<String, V>> entries = new ArrayList<>(mSize);
+    for (Map<String, V> partition : mPartitions) {
+      entries.addAll(partition.entrySet());
+    }
+    return entries;
+  }
+
+  private List<Map<String, V>> with(int index, Map<String, V> partition) {
+    List<Map<String, V>> partitions = new ArrayList<>(mPartitions);
+    partitions.set(index, partition);
+    return partitions;
+  }
+}
@@ -4,17 +4,19 @@ import androidx.annotation.NonNull;
 
 import org.json.JSONObject;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+/** Immutable, changes return a new Peer. */
 @SuppressWarnings("WeakerAccess")
 public class Peer extends Info {
 
-  private String mId;
-  private String mDisplayName;
-  private DeviceInfo mDevice;
+  private final String mId;
+  private final String mDisplayName;
+  private final DeviceInfo mDevice;
 
-  private Set<String> consumers;
+  private final Set<String> consumers;
 
   public Peer(@NonNull JSONObject info) {
     mId = info.optString("id");
@@ -29,7 +31,14 @@ public class Peer extends Info {
     } else {
       mDevice = DeviceInfo.unknownDevice();
     }
-    consumers = new HashSet<>();
+    consumers = Collections.emptySet();
+  }
+
+  private Peer(String id, String displayName, DeviceInfo device, Set<String> consumers) {
+    mId = id;
+    mDisplayName = displayName;
+    mDevice = device;
+    this.consumers = consumers;
   }
 
   @Override
@@ -47,14 +56,26 @@ public class Peer extends Info {
     return mDevice;
   }
 
-  public void setDisplayName(String displayName) {
-    this.mDisplayName = displayName;
+  public Peer withDisplayName(String displayName) {
+    return new Peer(mId, displayName, mDevice, consumers);
   }
 
-  public void setDevice(DeviceInfo device) {
-    this.mDevice = device;
+  public Peer withConsumer(String consumerId) {
+    Set<String> copy = new HashSet<>(consumers);
+    copy.add(consumerId);
+    return new Peer(mId, mDisplayName, mDevice, Collections.unmodifiableSet(copy));
+  }
+
+  public Peer withoutConsumer(String consumerId) {
+    if (!consumers.contains(consumerId)) {
+      return this;
+    }
+    Set<String> copy = new HashSet<>(consumers);
+    copy.remove(consumerId);
+    return new Peer(mId, mDisplayName, mDevice, Collections.unmodifiableSet(copy));
   }
 
+  /** Ids of the Consumers of this peer, read only. */
   public Set<String> getConsumers() {
     return consumers;
   }
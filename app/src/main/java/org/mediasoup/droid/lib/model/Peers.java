@@ -12,50 +12,68 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Immutable snapshot of the remote peers, in join order.
+ *
+ * <p>Changes return a new snapshot which shares the unchanged Peers with this one. Each change
+ * copies the peer map, O(peers): peers only change on join, leave, rename and Consumer add or
+ * remove, never on score or layer notifications.
+ */
 public class Peers {
 
   private static final String TAG = "Peers";
 
-  private Map<String, Peer> mPeersInfo;
+  // Never modified once the snapshot is built, changes copy it.
+  private final Map<String, Peer> mPeersInfo;
 
   public Peers() {
-    mPeersInfo = Collections.synchronizedMap(new LinkedHashMap<>());
+    mPeersInfo = Collections.emptyMap();
   }
 
-  public void addPeer(String peerId, @NonNull JSONObject peerInfo) {
-    mPeersInfo.put(peerId, new Peer(peerInfo));
+  private Peers(Map<String, Peer> peersInfo) {
+    mPeersInfo = peersInfo;
   }
 
-  public void removePeer(String peerId) {
-    mPeersInfo.remove(peerId);
+  public Peers addPeer(String peerId, @NonNull JSONObject peerInfo) {
+    return replace(peerId, new Peer(peerInfo));
   }
 
-  public void setPeerDisplayName(String peerId, String displayName) {
+  public Peers removePeer(String peerId) {
+    if (!mPeersInfo.containsKey(peerId)) {
+      return this;
+    }
+    Map<String, Peer> copy = new LinkedHashMap<>(mPeersInfo);
+    copy.remove(peerId);
+    return new Peers(copy);
+  }
+
+  public Peers setPeerDisplayName(String peerId, String displayName) {
     Peer peer = mPeersInfo.get(peerId);
     if (peer == null) {
       Logger.e(TAG, "no Protoo found");
-      return;
+      return this;
     }
-    peer.setDisplayName(displayName);
+    return replace(peerId, peer.withDisplayName(displayName));
   }
 
-  public void addConsumer(String peerId, Consumer consumer) {
+  public Peers addConsumer(String peerId, Consumer consumer) {
     Peer peer = getPeer(peerId);
     if (peer == null) {
       Logger.e(TAG, "no Peer found for new Consumer");
-      return;
+      return this;
     }
 
-    peer.getConsumers().add(consumer.getId());
+    return replace(peerId, peer.withConsumer(consumer.getId()));
   }
 
-  public void removeConsumer(String peerId, String consumerId) {
+  public Peers removeConsumer(String peerId, String consumerId) {
     Peer peer = getPeer(peerId);
     if (peer == null) {
-      return;
+      return this;
     }
 
-    peer.getConsumers().remove(consumerId);
+    Peer updated = peer.withoutConsumer(consumerId);
+    return updated == peer ? this : replace(peerId, updated);
   }
 
   public Peer getPeer(String peerId) {
@@ -63,14 +81,16 @@ public class Peers {
   }
 
   public List<Peer> getAllPeers() {
-    List<Peer> peers = new ArrayList<>();
-    for (Map.Entry<String, Peer> info : mPeersInfo.entrySet()) {
-      peers.add(info.getValue());
-    }
-    return peers;
+    return new ArrayList<>(mPeersInfo.values());
+  }
+
+  public Peers clear() {
+    return mPeersInfo.isEmpty() ? this : new Peers();
   }
 
-  public void clear() {
-    mPeersInfo.clear();
+  private Peers replace(String peerId, Peer peer) {
+    Map<String, Peer> copy = new LinkedHashMap<>(mPeersInfo);
+    copy.put(peerId, peer);
+    return new Peers(copy);
   }
 }
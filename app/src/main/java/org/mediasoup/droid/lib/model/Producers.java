@@ -5,9 +5,15 @@ import androidx.annotation.NonNull;
 import org.json.JSONArray;
 import org.mediasoup.droid.Producer;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Immutable snapshot of the Producers.
+ *
+ * <p>Changes return a new snapshot which shares the unchanged ProducersWrappers with this one.
+ */
 public class Producers {
 
   public static class ProducersWrapper {
@@ -15,18 +21,47 @@ public class Producers {
     public static final String TYPE_CAM = "cam";
     public static final String TYPE_SHARE = "share";
 
-    private Producer mProducer;
-    private JSONArray mScore;
-    private String mType;
+    private final Producer mProducer;
+    // Track kind, read once so lookups by kind do not go through JNI.
+    private final String mKind;
+    private final JSONArray mScore;
+    private final String mType;
 
     ProducersWrapper(Producer producer) {
+      this(producer, kindOf(producer), null, null);
+    }
+
+    private ProducersWrapper(Producer producer, String kind, JSONArray score, String type) {
       this.mProducer = producer;
+      this.mKind = kind;
+      this.mScore = score;
+      this.mType = type;
+    }
+
+    private static String kindOf(Producer producer) {
+      if (producer == null || producer.getTrack() == null) {
+        return null;
+      }
+      return producer.getTrack().kind();
+    }
+
+    // Same Producer, new wrapper so observers see the change.
+    private ProducersWrapper copy() {
+      return new ProducersWrapper(mProducer, mKind, mScore, mType);
+    }
+
+    private ProducersWrapper withScore(JSONArray score) {
+      return new ProducersWrapper(mProducer, mKind, score, mType);
     }
 
     public Producer getProducer() {
       return mProducer;
     }
 
+    public String getKind() {
+      return mKind;
+    }
+
     public JSONArray getScore() {
       return mScore;
     }
@@ -34,67 +69,97 @@ public class Producers {
     public String getType() {
       return mType;
     }
-
-    public void setType(String type) {
-      mType = type;
-    }
   }
 
+  // Never modified once the snapshot is built.
   private final Map<String, ProducersWrapper> mProducers;
+  // kind -> producerId. Only changes on add/remove, so score or pause updates share it.
+  private final Map<String, String> mProducerIdsByKind;
 
   public Producers() {
-    mProducers = new ConcurrentHashMap<>();
+    mProducers = Collections.emptyMap();
+    mProducerIdsByKind = Collections.emptyMap();
   }
 
-  public void addProducer(Producer producer) {
-    mProducers.put(producer.getId(), new ProducersWrapper(producer));
+  private Producers(
+      Map<String, ProducersWrapper> producers, Map<String, String> producerIdsByKind) {
+    mProducers = producers;
+    mProducerIdsByKind = producerIdsByKind;
   }
 
-  public void removeProducer(String producerId) {
-    mProducers.remove(producerId);
+  public Producers addProducer(Producer producer) {
+    ProducersWrapper wrapper = new ProducersWrapper(producer);
+    Map<String, ProducersWrapper> copy = new HashMap<>(mProducers);
+    copy.put(producer.getId(), wrapper);
+    Map<String, String> ids = mProducerIdsByKind;
+    if (wrapper.mKind != null) {
+      ids = new HashMap<>(mProducerIdsByKind);
+      ids.put(wrapper.mKind, producer.getId());
+    }
+    return new Producers(copy, ids);
   }
 
-  public void setProducerPaused(String producerId) {
+  public Producers removeProducer(String producerId) {
     ProducersWrapper wrapper = mProducers.get(producerId);
     if (wrapper == null) {
-      return;
+      return this;
+    }
+    Map<String, ProducersWrapper> copy = new HashMap<>(mProducers);
+    copy.remove(producerId);
+    Map<String, String> ids = mProducerIdsByKind;
+    if (wrapper.mKind != null && producerId.equals(ids.get(wrapper.mKind))) {
+      ids = new HashMap<>(mProducerIdsByKind);
+      ids.remove(wrapper.mKind);
+      // Fall back to another Producer of the same kind, if any.
+      for (Map.Entry<String, ProducersWrapper> entry : copy.entrySet()) {
+        if (wrapper.mKind.equals(entry.getValue().mKind)) {
+          ids.put(wrapper.mKind, entry.getKey());
+          break;
+        }
+      }
+    }
+    return new Producers(copy, ids);
+  }
+
+  public Producers setProducerPaused(String producerId) {
+    ProducersWrapper wrapper = mProducers.get(producerId);
+    if (wrapper == null) {
+      return this;
     }
     wrapper.mProducer.pause();
+    return replace(producerId, wrapper.copy());
   }
 
-  public void setProducerResumed(String producerId) {
+  public Producers setProducerResumed(String producerId) {
     ProducersWrapper wrapper = mProducers.get(producerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
     wrapper.mProducer.resume();
+    return replace(producerId, wrapper.copy());
   }
 
-  public void setProducerScore(String producerId, JSONArray score) {
+  public Producers setProducerScore(String producerId, JSONArray score) {
     ProducersWrapper wrapper = mProducers.get(producerId);
     if (wrapper == null) {
-      return;
+      return this;
     }
-    wrapper.mScore = score;
+    return replace(producerId, wrapper.withScore(score));
   }
 
+  /** The Producer of {@code kind} ("audio" or "video"), in O(1). */
   public ProducersWrapper filter(@NonNull String kind) {
-    for (ProducersWrapper wrapper : mProducers.values()) {
-      if (wrapper.mProducer == null) {
-        continue;
-      }
-      if (wrapper.mProducer.getTrack() == null) {
-        continue;
-      }
-      if (kind.equals(wrapper.mProducer.getTrack().kind())) {
-        return wrapper;
-      }
-    }
+    String producerId = mProducerIdsByKind.get(kind);
+    return producerId != null ? mProducers.get(producerId) : null;
+  }
 
-    return null;
+  public Producers clear() {
+    return mProducers.isEmpty() ? this : new Producers();
   }
 
-  public void clear() {
-    mProducers.clear();
+  private Producers replace(String producerId, ProducersWrapper wrapper) {
+    Map<String, ProducersWrapper> copy = new HashMap<>(mProducers);
+    copy.put(producerId, wrapper);
+    return new Producers(copy, mProducerIdsByKind);
   }
 }
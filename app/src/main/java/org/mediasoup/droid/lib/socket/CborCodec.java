@@ -0,0 +1,388 @@
+package org.mediasoup.droid.lib.socket;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+import org.mediasoup.droid.lib.JsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * protoo messages as CBOR (RFC 7049) binary frames.
+ *
+ * <p>Covers the JSON data model only: maps with string keys, arrays, strings, numbers, booleans
+ * and null. protoo-client only builds Messages from JSON text, so frames are decoded straight to
+ * text rather than to a JSONObject tree, which Message.parse() then parses as usual. The gain is
+ * fewer bytes on the wire only: receiving costs the CBOR decode on top of the same JSON parsing.
+ */
+public class CborCodec implements WireCodec {
+
+  private static final String TAG = "CborCodec";
+
+  public static final String PROTOCOL = "protoo-cbor";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int MAJOR_UNSIGNED = 0;
+  private static final int MAJOR_NEGATIVE = 1;
+  private static final int MAJOR_BYTES = 2;
+  private static final int MAJOR_TEXT = 3;
+  private static final int MAJOR_ARRAY = 4;
+  private static final int MAJOR_MAP = 5;
+  private static final int MAJOR_TAG = 6;
+  private static final int MAJOR_SIMPLE = 7;
+
+  private static final int SIMPLE_FALSE = 20;
+  private static final int SIMPLE_TRUE = 21;
+  private static final int SIMPLE_NULL = 22;
+  private static final int SIMPLE_UNDEFINED = 23;
+  private static final int FLOAT_HALF = 25;
+  private static final int FLOAT_SINGLE = 26;
+  private static final int FLOAT_DOUBLE = 27;
+  private static final int INDEFINITE = 31;
+  private static final int BREAK = 0xff;
+  // Deepest nesting decoded, protoo messages stay far below.
+  private static final int MAX_DEPTH = 32;
+
+  /** Malformed or unsupported CBOR frame. */
+  public static class CborException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    CborException(String message) {
+      super(message);
+    }
+  }
+
+  @NonNull
+  @Override
+  public String getProtocol() {
+    return PROTOCOL;
+  }
+
+  @Override
+  public boolean send(
+      @NonNull WebSocket webSocket, @NonNull JSONObject message, @NonNull String payload) {
+    return webSocket.send(encode(message));
+  }
+
+  @Nullable
+  @Override
+  public String decode(@NonNull ByteString bytes) {
+    try {
+      return decodeToJson(bytes.asByteBuffer());
+    } catch (CborException e) {
+      Logger.e(TAG, "decode() | invalid frame", e);
+      return null;
+    }
+  }
+
+  /** JSON text of the CBOR map in {@code in}. */
+  @NonNull
+  public static String decodeToJson(@NonNull ByteBuffer in) throws CborException {
+    if (!in.hasRemaining() || (in.get(in.position()) & 0xff) >>> 5 != MAJOR_MAP) {
+      throw new CborException("not a map");
+    }
+    StringBuilder out = new StringBuilder(in.remaining() * 2);
+    readItem(in, out, 0);
+    if (in.hasRemaining()) {
+      throw new CborException(in.remaining() + " trailing bytes");
+    }
+    return out.toString();
+  }
+
+  @NonNull
+  public static ByteString encode(@NonNull JSONObject message) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    writeItem(out, message);
+    return ByteString.of(out.toByteArray());
+  }
+
+  private static void writeItem(ByteArrayOutputStream out, Object value) {
+    if (value == null || value == JSONObject.NULL) {
+      out.write(MAJOR_SIMPLE << 5 | SIMPLE_NULL);
+    } else if (value instanceof Boolean) {
+      out.write(MAJOR_SIMPLE << 5 | ((Boolean) value ? SIMPLE_TRUE : SIMPLE_FALSE));
+    } else if (value instanceof String) {
+      byte[] utf8 = ((String) value).getBytes(UTF_8);
+      writeHead(out, MAJOR_TEXT, utf8.length);
+      out.write(utf8, 0, utf8.length);
+    } else if (value instanceof JsonUtils.RawJson) {
+      writeRawJson(out, (JsonUtils.RawJson) value);
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+      long l = ((Number) value).longValue();
+      if (l >= 0) {
+        writeHead(out, MAJOR_UNSIGNED, l);
+      } else {
+        writeHead(out, MAJOR_NEGATIVE, -1 - l);
+      }
+    } else if (value instanceof Number) {
+      long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+      out.write(MAJOR_SIMPLE << 5 | FLOAT_DOUBLE);
+      writeLong(out, bits, 8);
+    } else if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      writeHead(out, MAJOR_MAP, object.length());
+      Iterator<String> keys = object.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        writeItem(out, key);
+        writeItem(out, object.opt(key));
+      }
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      writeHead(out, MAJOR_ARRAY, array.length());
+      for (int i = 0; i < array.length(); i++) {
+        writeItem(out, array.opt(i));
+      }
+    } else {
+      writeItem(out, value.toString());
+    }
+  }
+
+  private static void writeRawJson(ByteArrayOutputStream out, JsonUtils.RawJson value) {
+    try {
+      writeItem(out, value.toJsonValue());
+    } catch (JSONException e) {
+      Logger.e(TAG, "writeRawJson() | invalid JSON", e);
+      writeItem(out, value.toString());
+    }
+  }
+
+  private static void writeHead(ByteArrayOutputStream out, int major, long length) {
+    if (length < 24) {
+      out.write(major << 5 | (int) length);
+    } else if (length < 0x100L) {
+      out.write(major << 5 | 24);
+      writeLong(out, length, 1);
+    } else if (length < 0x10000L) {
+      out.write(major << 5 | 25);
+      writeLong(out, length, 2);
+    } else if (length < 0x100000000L) {
+      out.write(major << 5 | 26);
+      writeLong(out, length, 4);
+    } else {
+      out.write(major << 5 | 27);
+      writeLong(out, length, 8);
+    }
+  }
+
+  private static void writeLong(ByteArrayOutputStream out, long value, int size) {
+    for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+      out.write((int) (value >>> shift) & 0xff);
+    }
+  }
+
+  // Append the item at the head of in to out as JSON text.
+  private static void readItem(ByteBuffer in, StringBuilder out, int depth) throws CborException {
+    if (depth > MAX_DEPTH) {
+      throw new CborException("nesting deeper than " + MAX_DEPTH);
+    }
+    int initial = readByte(in);
+    int major = initial >>> 5;
+    int info = initial & 0x1f;
+    switch (major) {
+      case MAJOR_UNSIGNED:
+        out.append(readLength(in, info));
+        return;
+      case MAJOR_NEGATIVE:
+        out.append(-1 - readLength(in, info));
+        return;
+      case MAJOR_TEXT:
+        out.append(JSONObject.quote(readText(in, info)));
+        return;
+      case MAJOR_ARRAY:
+        {
+          long length = readCount(in, info);
+          out.append('[');
+          for (long i = 0; length < 0 ? !readBreak(in) : i < length; i++) {
+            if (i > 0) {
+              out.append(',');
+            }
+            readItem(in, out, depth + 1);
+          }
+          out.append(']');
+          return;
+        }
+      case MAJOR_MAP:
+        {
+          long length = readCount(in, info);
+          out.append('{');
+          for (long i = 0; length < 0 ? !readBreak(in) : i < length; i++) {
+            if (i > 0) {
+              out.append(',');
+            }
+            readKey(in, out, depth + 1);
+            out.append(':');
+            readItem(in, out, depth + 1);
+          }
+          out.append('}');
+          return;
+        }
+      case MAJOR_TAG:
+        // Tags carry no meaning in the JSON data model, decode the tagged item.
+        readLength(in, info);
+        readItem(in, out, depth + 1);
+        return;
+      case MAJOR_SIMPLE:
+        readSimple(in, info, out);
+        return;
+      case MAJOR_BYTES:
+      default:
+        throw new CborException("unsupported major type " + major);
+    }
+  }
+
+  // JSON keys are strings, other CBOR keys are written as their JSON text in quotes.
+  private static void readKey(ByteBuffer in, StringBuilder out, int depth) throws CborException {
+    if (in.hasRemaining() && (in.get(in.position()) & 0xff) >>> 5 == MAJOR_TEXT) {
+      readItem(in, out, depth);
+      return;
+    }
+    StringBuilder key = new StringBuilder();
+    readItem(in, key, depth);
+    out.append(JSONObject.quote(key.toString()));
+  }
+
+  private static int readByte(ByteBuffer in) throws CborException {
+    require(in, 1);
+    return in.get() & 0xff;
+  }
+
+  private static void require(ByteBuffer in, long length) throws CborException {
+    if (length > in.remaining()) {
+      throw new CborException("truncated frame, " + length + " bytes past " + in.position());
+    }
+  }
+
+  // Argument of the head. Indefinite length is only valid for arrays, maps and strings, whose
+  // readers check for it first.
+  private static long readLength(ByteBuffer in, int info) throws CborException {
+    if (info < 24) {
+      return info;
+    }
+    switch (info) {
+      case 24:
+        return readByte(in);
+      case 25:
+        require(in, 2);
+        return in.getShort() & 0xffffL;
+      case 26:
+        require(in, 4);
+        return in.getInt() & 0xffffffffL;
+      case 27:
+        require(in, 8);
+        long length = in.getLong();
+        if (length < 0) {
+          throw new CborException("argument out of range");
+        }
+        return length;
+      default:
+        throw new CborException("invalid additional info " + info);
+    }
+  }
+
+  // Item count of an array or map, checked against the bytes left: every item takes one at least.
+  // -1 for indefinite length.
+  private static long readCount(ByteBuffer in, int info) throws CborException {
+    if (info == INDEFINITE) {
+      return -1;
+    }
+    long count = readLength(in, info);
+    require(in, count);
+    return count;
+  }
+
+  private static boolean readBreak(ByteBuffer in) throws CborException {
+    require(in, 1);
+    if ((in.get(in.position()) & 0xff) == BREAK) {
+      in.get();
+      return true;
+    }
+    return false;
+  }
+
+  private static String readText(ByteBuffer in, int info) throws CborException {
+    if (info != INDEFINITE) {
+      long length = readLength(in, info);
+      require(in, length);
+      byte[] utf8 = new byte[(int) length];
+      in.get(utf8);
+      return new String(utf8, UTF_8);
+    }
+    // Indefinite length: concatenation of definite length chunks.
+    StringBuilder sb = new StringBuilder();
+    while (!readBreak(in)) {
+      int chunk = readByte(in);
+      if (chunk >>> 5 != MAJOR_TEXT || (chunk & 0x1f) == INDEFINITE) {
+        throw new CborException("invalid text chunk");
+      }
+      sb.append(readText(in, chunk & 0x1f));
+    }
+    return sb.toString();
+  }
+
+  private static void readSimple(ByteBuffer in, int info, StringBuilder out)
+      throws CborException {
+    switch (info) {
+      case SIMPLE_FALSE:
+        out.append("false");
+        return;
+      case SIMPLE_TRUE:
+        out.append("true");
+        return;
+      case SIMPLE_NULL:
+      case SIMPLE_UNDEFINED:
+        out.append("null");
+        return;
+      case FLOAT_HALF:
+        require(in, 2);
+        appendDouble(out, halfToDouble(in.getShort() & 0xffff));
+        return;
+      case FLOAT_SINGLE:
+        require(in, 4);
+        appendDouble(out, Float.intBitsToFloat(in.getInt()));
+        return;
+      case FLOAT_DOUBLE:
+        require(in, 8);
+        appendDouble(out, Double.longBitsToDouble(in.getLong()));
+        return;
+      default:
+        throw new CborException("unsupported simple value " + info);
+    }
+  }
+
+  private static void appendDouble(StringBuilder out, double value) throws CborException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new CborException("non-finite number");
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      out.append((long) value);
+    } else {
+      out.append(value);
+    }
+  }
+
+  private static double halfToDouble(int half) {
+    int exponent = (half >> 10) & 0x1f;
+    int mantissa = half & 0x3ff;
+    double value;
+    if (exponent == 0) {
+      value = mantissa * Math.pow(2, -24);
+    } else if (exponent != 31) {
+      value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+    } else {
+      value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    }
+    return (half & 0x8000) != 0 ? -value : value;
+  }
+}
@@ -0,0 +1,33 @@
+package org.mediasoup.droid.lib.socket;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/** Plain protoo JSON text frames. */
+public class JsonCodec implements WireCodec {
+
+  public static final String PROTOCOL = "protoo";
+
+  @NonNull
+  @Override
+  public String getProtocol() {
+    return PROTOCOL;
+  }
+
+  @Override
+  public boolean send(
+      @NonNull WebSocket webSocket, @NonNull JSONObject message, @NonNull String payload) {
+    return webSocket.send(payload);
+  }
+
+  @Nullable
+  @Override
+  public String decode(@NonNull ByteString bytes) {
+    return null;
+  }
+}
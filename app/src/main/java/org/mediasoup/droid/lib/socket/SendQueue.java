@@ -0,0 +1,130 @@
+package org.mediasoup.droid.lib.socket;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * FIFO of outbound messages not yet handed to the WebSocket.
+ *
+ * <p>Requests that only set a state are coalesced: a queued request is superseded by a later one
+ * with the same method and target (pauseConsumer of the same consumer, setConsumerPreferredLayers
+ * of the same consumer...), which records the superseded request id so it can be answered with the
+ * later request's response. Not thread safe, only used on the socket thread.
+ */
+class SendQueue {
+
+  static class Entry {
+    @NonNull final JSONObject message;
+    @NonNull final String payload;
+    // protoo request id, 0 for notifications.
+    final long id;
+    @Nullable final String coalesceKey;
+    // Ids of the queued requests this one superseded, oldest first.
+    @NonNull final List<Long> supersededIds = new ArrayList<>();
+
+    Entry(@NonNull JSONObject message, @NonNull String payload) {
+      this.message = message;
+      this.payload = payload;
+      this.id = message.optBoolean("request") ? message.optLong("id") : 0;
+      this.coalesceKey = coalesceKey(message);
+    }
+  }
+
+  private final LinkedList<Entry> mEntries = new LinkedList<>();
+  private volatile int mSize;
+  private volatile long mCoalescedCount;
+
+  /** Append {@code entry}, return the queued entry it supersedes if any. */
+  @Nullable
+  Entry offer(@NonNull Entry entry) {
+    Entry superseded = null;
+    if (entry.coalesceKey != null) {
+      Iterator<Entry> iterator = mEntries.iterator();
+      while (iterator.hasNext()) {
+        Entry queued = iterator.next();
+        if (entry.coalesceKey.equals(queued.coalesceKey)) {
+          iterator.remove();
+          entry.supersededIds.addAll(queued.supersededIds);
+          entry.supersededIds.add(queued.id);
+          superseded = queued;
+          mCoalescedCount++;
+          break;
+        }
+      }
+    }
+    mEntries.addLast(entry);
+    mSize = mEntries.size();
+    return superseded;
+  }
+
+  @Nullable
+  Entry peek() {
+    return mEntries.peekFirst();
+  }
+
+  void poll() {
+    mEntries.pollFirst();
+    mSize = mEntries.size();
+  }
+
+  /** Drop the request {@code id} if still queued, return whether it was. */
+  boolean remove(long id) {
+    Iterator<Entry> iterator = mEntries.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().id == id) {
+        iterator.remove();
+        mSize = mEntries.size();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Drop all entries, return how many there were. */
+  int clear() {
+    int size = mEntries.size();
+    mEntries.clear();
+    mSize = 0;
+    return size;
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  long getCoalescedCount() {
+    return mCoalescedCount;
+  }
+
+  @Nullable
+  private static String coalesceKey(JSONObject message) {
+    if (!message.optBoolean("request")) {
+      return null;
+    }
+    JSONObject data = message.optJSONObject("data");
+    if (data == null) {
+      return null;
+    }
+    // Only the same method: a pause must not take a queued resume's response as its own.
+    String method = message.optString("method");
+    switch (method) {
+      case "pauseConsumer":
+      case "resumeConsumer":
+      case "setConsumerPreferredLayers":
+      case "setConsumerPriority":
+        return method + ":" + data.optString("consumerId");
+      case "pauseProducer":
+      case "resumeProducer":
+        return method + ":" + data.optString("producerId");
+      default:
+        return null;
+    }
+  }
+}
@@ -5,13 +5,21 @@ import android.os.HandlerThread;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.mediasoup.droid.Logger;
+import org.mediasoup.droid.lib.JsonUtils;
 import org.protoojs.droid.Message;
 import org.protoojs.droid.transports.AbsWebSocketTransport;
 
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -27,11 +35,18 @@ import okhttp3.logging.HttpLoggingInterceptor;
 import okio.ByteString;
 
 import static org.apache.http.conn.ssl.SSLSocketFactory.SSL;
+import static org.mediasoup.droid.lib.JsonUtils.jsonPut;
 
 public class WebSocketTransport extends AbsWebSocketTransport {
 
   // Log tag.
   private static final String TAG = "WebSocketTransport";
+  // Max messages waiting for the WebSocket.
+  private static final int SEND_QUEUE_CAPACITY = 256;
+  // Max bytes buffered by OkHttp before we hold back the send queue.
+  private static final long MAX_SOCKET_QUEUE_BYTES = 256 * 1024;
+  // Delay before retrying a flush held back by MAX_SOCKET_QUEUE_BYTES.
+  private static final int FLUSH_RETRY_DELAY_MS = 50;
   // Closed flag.
   private boolean mClosed;
   // Connected flag.
@@ -43,9 +58,29 @@ public class WebSocketTransport extends AbsWebSocketTransport {
   // Retry operation.
   private final RetryStrategy mRetryStrategy;
   // WebSocket instance.
-  private WebSocket mWebSocket;
+  private volatile WebSocket mWebSocket;
+  // Outbound messages, kept across reconnects until the WebSocket takes them.
+  private final SendQueue mSendQueue = new SendQueue();
+  // Messages accepted by sendMessage() and not handed to the WebSocket yet, bounds mSendQueue.
+  private final AtomicInteger mQueuedCount = new AtomicInteger();
+  // Sent request id -> ids of the queued requests it superseded, answered with its response.
+  private final Map<Long, List<Long>> mSupersededIds = new ConcurrentHashMap<>();
+  // Whether a delayed flush is pending.
+  private boolean mFlushScheduled;
+  // Whether the WebSocket has been open before, a later open is a reconnect.
+  private boolean mOpened;
+  // Whether mSendQueue is held after a reconnect, until the session is resumed or reset.
+  private volatile boolean mHeld;
   // Listener.
   private Listener mListener;
+  // Run on the socket thread when the WebSocket opens or goes away, before the listener.
+  private volatile Runnable mConnectionChangeCallback;
+  // Id of the last request sendMessage() accepted, per calling thread.
+  private final ThreadLocal<Long> mSentRequestId = new ThreadLocal<>();
+  // Offered wire codecs, in preference order.
+  private final List<WireCodec> mCodecs;
+  // Wire codec negotiated for the current WebSocket.
+  private volatile WireCodec mCodec;
 
   private static class RetryStrategy {
 
@@ -84,7 +119,16 @@ public class WebSocketTransport extends AbsWebSocketTransport {
   }
 
   public WebSocketTransport(String url) {
+    this(url, new JsonCodec());
+  }
+
+  public WebSocketTransport(String url, WireCodec... codecs) {
     super(url);
+    mCodecs = new ArrayList<>(Arrays.asList(codecs));
+    if (mCodecs.isEmpty()) {
+      mCodecs.add(new JsonCodec());
+    }
+    mCodec = mCodecs.get(mCodecs.size() - 1);
     mOkHttpClient = getUnsafeOkHttpClient();
     HandlerThread handlerThread = new HandlerThread("socket");
     handlerThread.start();
@@ -101,11 +145,36 @@ public class WebSocketTransport extends AbsWebSocketTransport {
 
   private void newWebSocket() {
     mWebSocket = null;
+    StringBuilder protocols = new StringBuilder();
+    for (WireCodec codec : mCodecs) {
+      if (protocols.length() > 0) {
+        protocols.append(", ");
+      }
+      protocols.append(codec.getProtocol());
+    }
     mOkHttpClient.newWebSocket(
-        new Request.Builder().url(mUrl).addHeader("Sec-WebSocket-Protocol", "protoo").build(),
+        new Request.Builder()
+            .url(mUrl)
+            .addHeader("Sec-WebSocket-Protocol", protocols.toString())
+            .build(),
         new ProtooWebSocketListener());
   }
 
+  // Pick the codec the server accepted, plain JSON if it didn't say.
+  private WireCodec negotiateCodec(Response response) {
+    String protocol = response.header("Sec-WebSocket-Protocol");
+    for (WireCodec codec : mCodecs) {
+      if (codec.getProtocol().equals(protocol)) {
+        return codec;
+      }
+    }
+    return new JsonCodec();
+  }
+
+  public WireCodec getCodec() {
+    return mCodec;
+  }
+
   private boolean scheduleReconnect() {
     int reconnectInterval = mRetryStrategy.getReconnectInterval();
     if (reconnectInterval == -1) {
@@ -131,19 +200,141 @@ public class WebSocketTransport extends AbsWebSocketTransport {
     if (mClosed) {
       throw new IllegalStateException("transport closed");
     }
-    String payload = message.toString();
+    // protoo registers a request only once this returns, so a full queue can't be answered with
+    // a response. Throw instead, Protoo turns it into a failed request.
+    if (mQueuedCount.incrementAndGet() > SEND_QUEUE_CAPACITY) {
+      mQueuedCount.decrementAndGet();
+      Logger.w(TAG, "send queue full, dropping " + message.optString("method"));
+      throw new IllegalStateException("send queue full");
+    }
+    if (message.optBoolean("request")) {
+      mSentRequestId.set(message.optLong("id"));
+    }
+    // protoo sizes request timeouts from the text payload, so it is built whatever the codec.
+    String payload = JsonUtils.toJsonText(message);
     mHandler.post(
         () -> {
           if (mClosed) {
+            mQueuedCount.decrementAndGet();
             return;
           }
-          if (mWebSocket != null) {
-            mWebSocket.send(payload);
-          }
+          enqueue(new SendQueue.Entry(message, payload));
         });
     return payload;
   }
 
+  /**
+   * Id of the request the last {@link #sendMessage} call of this thread accepted, 0 if none.
+   * protoo-client generates request ids itself, this lets the caller learn them.
+   */
+  public long takeSentRequestId() {
+    Long id = mSentRequestId.get();
+    mSentRequestId.remove();
+    return id != null ? id : 0;
+  }
+
+  /** Drop the request {@code requestId} if still queued, its caller gave up on it. */
+  public void cancelRequest(long requestId) {
+    mHandler.post(
+        () -> {
+          if (mSendQueue.remove(requestId)) {
+            mQueuedCount.decrementAndGet();
+            Logger.w(TAG, "cancelRequest() | dropped queued request " + requestId);
+          }
+        });
+  }
+
+  /** {@code callback} runs on the socket thread when the WebSocket opens or goes away. */
+  public void setConnectionChangeCallback(@Nullable Runnable callback) {
+    mConnectionChangeCallback = callback;
+  }
+
+  private void onConnectionChange() {
+    Runnable callback = mConnectionChangeCallback;
+    if (callback != null) {
+      callback.run();
+    }
+  }
+
+  /** Send the messages held since the reconnect, the session they belong to goes on. */
+  public void releaseSendQueue() {
+    mHandler.post(
+        () -> {
+          mHeld = false;
+          flush();
+        });
+  }
+
+  /**
+   * Drop the messages queued so far, for a session given up on. Their requests get no answer, the
+   * caller is expected to fail them.
+   */
+  public void discardSendQueue() {
+    mHandler.post(
+        () -> {
+          int dropped = mSendQueue.clear();
+          mQueuedCount.addAndGet(-dropped);
+          mSupersededIds.clear();
+          if (dropped > 0) {
+            Logger.w(TAG, "discarded " + dropped + " queued messages");
+          }
+          mHeld = false;
+          flush();
+        });
+  }
+
+  /** Number of messages waiting for the WebSocket, e.g. while reconnecting. */
+  public int getSendQueueSize() {
+    return mQueuedCount.get();
+  }
+
+  /** Number of queued requests dropped because a later one superseded them. */
+  public long getCoalescedCount() {
+    return mSendQueue.getCoalescedCount();
+  }
+
+  private void enqueue(SendQueue.Entry entry) {
+    if (mSendQueue.offer(entry) != null) {
+      // The superseded request is answered along with entry, see deliverToSuperseded().
+      mQueuedCount.decrementAndGet();
+    }
+    flush();
+  }
+
+  private void flush() {
+    SendQueue.Entry entry;
+    while (!mHeld && mWebSocket != null && (entry = mSendQueue.peek()) != null) {
+      if (mWebSocket.queueSize() > MAX_SOCKET_QUEUE_BYTES) {
+        scheduleFlush();
+        return;
+      }
+      if (!mCodec.send(mWebSocket, entry.message, entry.payload)) {
+        // WebSocket closing, keep the message for the next one.
+        return;
+      }
+      mSendQueue.poll();
+      mQueuedCount.decrementAndGet();
+      if (!entry.supersededIds.isEmpty()) {
+        mSupersededIds.put(entry.id, entry.supersededIds);
+      }
+    }
+  }
+
+  private void scheduleFlush() {
+    if (mFlushScheduled) {
+      return;
+    }
+    mFlushScheduled = true;
+    mHandler.postDelayed(
+        () -> {
+          mFlushScheduled = false;
+          if (!mClosed) {
+            flush();
+          }
+        },
+        FLUSH_RETRY_DELAY_MS);
+  }
+
   @Override
   public void close() {
     if (mClosed) {
@@ -179,9 +370,18 @@ public class WebSocketTransport extends AbsWebSocketTransport {
       if (mClosed) {
         return;
       }
-      Logger.d(TAG, "onOpen() ");
+      mCodec = negotiateCodec(response);
+      Logger.d(TAG, "onOpen() codec: " + mCodec.getProtocol());
+      // What was queued while disconnected belongs to the previous connection's session, hold it
+      // until the listener resumes or resets that session.
+      if (mOpened) {
+        mHeld = true;
+      }
+      mOpened = true;
       mWebSocket = webSocket;
       mConnected = true;
+      mHandler.post(WebSocketTransport.this::flush);
+      onConnectionChange();
       if (mListener != null) {
         mListener.onOpen();
       }
@@ -196,7 +396,9 @@ public class WebSocketTransport extends AbsWebSocketTransport {
       }
       mClosed = true;
       mConnected = false;
+      mWebSocket = null;
       mRetryStrategy.reset();
+      onConnectionChange();
       if (mListener != null) {
         mListener.onClose();
       }
@@ -214,6 +416,9 @@ public class WebSocketTransport extends AbsWebSocketTransport {
       if (mClosed) {
         return;
       }
+      // Hold outbound messages in mSendQueue until the reconnect opens.
+      mWebSocket = null;
+      onConnectionChange();
       if (scheduleReconnect()) {
         if (mListener != null) {
           if (mConnected) {
@@ -238,6 +443,27 @@ public class WebSocketTransport extends AbsWebSocketTransport {
       if (mClosed) {
         return;
       }
+      deliver(text);
+    }
+
+    @Override
+    public void onMessage(@NotNull WebSocket webSocket, @NotNull ByteString bytes) {
+      Logger.d(TAG, "onMessage() binary");
+      if (mClosed) {
+        return;
+      }
+      // protoo-client builds Messages from text only, the codec decodes straight to it.
+      String text = mCodec.decode(bytes);
+      if (text == null) {
+        return;
+      }
+      deliver(text);
+    }
+
+    private void deliver(String text) {
+      if (!mSupersededIds.isEmpty()) {
+        deliverToSuperseded(text);
+      }
       Message message = Message.parse(text);
       if (message == null) {
         return;
@@ -246,10 +472,30 @@ public class WebSocketTransport extends AbsWebSocketTransport {
         mListener.onMessage(message);
       }
     }
+  }
 
-    @Override
-    public void onMessage(@NotNull WebSocket webSocket, @NotNull ByteString bytes) {
-      Logger.d(TAG, "onMessage()");
+  // Answer the requests superseded by the one text responds to with the same response, so their
+  // callers see what the server actually did.
+  private void deliverToSuperseded(String text) {
+    JSONObject response;
+    try {
+      response = new JSONObject(text);
+    } catch (JSONException e) {
+      return;
+    }
+    if (!response.optBoolean("response")) {
+      return;
+    }
+    List<Long> ids = mSupersededIds.remove(response.optLong("id"));
+    if (ids == null || mListener == null) {
+      return;
+    }
+    for (long id : ids) {
+      jsonPut(response, "id", id);
+      Message message = Message.parse(response.toString());
+      if (message != null) {
+        mListener.onMessage(message);
+      }
     }
   }
 
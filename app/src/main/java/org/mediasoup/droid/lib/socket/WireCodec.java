@@ -0,0 +1,33 @@
+package org.mediasoup.droid.lib.socket;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * Signaling wire format, negotiated through the Sec-WebSocket-Protocol header.
+ *
+ * <p>Messages keep the protoo JSON data model whatever the codec, only their encoding on the wire
+ * changes.
+ */
+public interface WireCodec {
+
+  /** Sec-WebSocket-Protocol token selecting this codec. */
+  @NonNull
+  String getProtocol();
+
+  /** Send {@code message}, whose JSON text form is {@code payload}, on {@code webSocket}. */
+  boolean send(
+      @NonNull WebSocket webSocket, @NonNull JSONObject message, @NonNull String payload);
+
+  /**
+   * Decode a binary frame to protoo JSON text, return null if the codec has no binary form or the
+   * frame is bad.
+   */
+  @Nullable
+  String decode(@NonNull ByteString bytes);
+}
@@ -0,0 +1,85 @@
+package org.mediasoup.droid.lib;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mediasoup.droid.lib.JsonUtils.optRawString;
+import static org.mediasoup.droid.lib.JsonUtils.rawJson;
+import static org.mediasoup.droid.lib.JsonUtils.toJsonText;
+import static org.mediasoup.droid.lib.JsonUtils.toRawMembers;
+
+public class JsonUtilsTest {
+
+  @Test
+  public void rawMembers() {
+    Map<String, String> members =
+        toRawMembers(
+            "{ \"id\" : \"t1\", \"n\": -1.5e3,\"ok\":true, \"none\":null,"
+                + " \"a\": [1, {\"b\": \"]}\"}], \"o\": {\"c\": [\"{\"]} }");
+
+    assertEquals(6, members.size());
+    assertEquals("\"t1\"", members.get("id"));
+    assertEquals("-1.5e3", members.get("n"));
+    assertEquals("true", members.get("ok"));
+    assertEquals("null", members.get("none"));
+    assertEquals("[1, {\"b\": \"]}\"}]", members.get("a"));
+    assertEquals("{\"c\": [\"{\"]}", members.get("o"));
+  }
+
+  @Test
+  public void rawMembersWithEscapedStrings() throws Exception {
+    String data =
+        new JSONObject()
+            .put("quote\"key", "a \"quoted\" value")
+            .put("backslash", "ends with \\")
+            .put("brace", "}{][,:")
+            .put("nested", new JSONObject().put("s", "\\\"}"))
+            .put("unicode", "\u00e9\u2028")
+            .toString();
+    Map<String, String> members = toRawMembers(data);
+
+    assertEquals(5, members.size());
+    assertEquals("a \"quoted\" value", optRawString(members, "quote\"key"));
+    assertEquals("ends with \\", optRawString(members, "backslash"));
+    assertEquals("}{][,:", optRawString(members, "brace"));
+    assertEquals("\\\"}", new JSONObject(members.get("nested")).getString("s"));
+    assertEquals("\u00e9\u2028", optRawString(members, "unicode"));
+  }
+
+  @Test
+  public void rawMembersOfInvalidInput() {
+    assertTrue(toRawMembers(null).isEmpty());
+    assertTrue(toRawMembers("").isEmpty());
+    assertTrue(toRawMembers("[1, 2]").isEmpty());
+    assertTrue(toRawMembers("{}").isEmpty());
+    assertEquals("", optRawString(toRawMembers("{\"a\": 1}"), "b"));
+  }
+
+  @Test
+  public void rawJsonSplicedVerbatim() throws Exception {
+    String raw = "{\"codecs\":[{\"mimeType\":\"video/VP8\"}],\"n\":1.0}";
+    JSONObject request =
+        new JSONObject()
+            .put("id", "t\"1")
+            .put("rtpCapabilities", rawJson(raw))
+            .put("list", new JSONArray().put(rawJson("[1,2]")).put(JSONObject.NULL));
+
+    String text = toJsonText(request);
+    assertTrue(text, text.contains("\"rtpCapabilities\":" + raw));
+    assertTrue(text, text.contains("\"list\":[[1,2],null]"));
+    JSONObject parsed = new JSONObject(text);
+    assertEquals("t\"1", parsed.getString("id"));
+    assertEquals(
+        "video/VP8",
+        parsed
+            .getJSONObject("rtpCapabilities")
+            .getJSONArray("codecs")
+            .getJSONObject(0)
+            .getString("mimeType"));
+  }
+}
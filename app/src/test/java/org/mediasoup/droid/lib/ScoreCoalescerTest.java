@@ -0,0 +1,117 @@
+package org.mediasoup.droid.lib;
+
+import android.os.Handler;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+import org.mediasoup.droid.lib.lv.RoomStore;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class ScoreCoalescerTest {
+
+  private static final long WINDOW_MS = 100;
+
+  private RoomStore mStore;
+  private Handler mHandler;
+  private ScoreCoalescer mCoalescer;
+
+  @Before
+  public void setUp() {
+    mStore = mock(RoomStore.class);
+    doAnswer(
+            invocation -> {
+              ((Runnable) invocation.getArgument(0)).run();
+              return null;
+            })
+        .when(mStore)
+        .transaction(any(Runnable.class));
+    mHandler = mock(Handler.class);
+    mCoalescer = new ScoreCoalescer(mStore);
+  }
+
+  // The flush posted to the handler, which must have been posted {@code times} times.
+  private Runnable postedFlush(int times) {
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    verify(mHandler, times(times)).postDelayed(flush.capture(), eq(WINDOW_MS));
+    return flush.getValue();
+  }
+
+  @Test
+  public void appliesRightAwayUntilStarted() {
+    JSONArray score = new JSONArray().put(10);
+    mCoalescer.setConsumerScore("c1", score);
+
+    verify(mStore).setConsumerScore("c1", score);
+  }
+
+  @Test
+  public void appliesRightAwayWithoutWindow() {
+    mCoalescer.start(mHandler, 0);
+    mCoalescer.setConsumerCurrentLayers("c1", 1, 2);
+
+    verify(mStore).setConsumerCurrentLayers("c1", 1, 2);
+    verify(mHandler, never()).postDelayed(any(Runnable.class), anyLong());
+  }
+
+  @Test
+  public void windowFlushAppliesLatestValuesInOneTransaction() {
+    JSONArray oldScore = new JSONArray().put(3);
+    JSONArray newScore = new JSONArray().put(9);
+    JSONArray producerScore = new JSONArray().put(7);
+    mCoalescer.start(mHandler, WINDOW_MS);
+    mCoalescer.setConsumerScore("c1", oldScore);
+    mCoalescer.setConsumerCurrentLayers("c1", 0, 0);
+    mCoalescer.setConsumerScore("c1", newScore);
+    mCoalescer.setConsumerCurrentLayers("c1", 2, 1);
+    mCoalescer.setProducerScore("p1", producerScore);
+
+    Runnable flush = postedFlush(1);
+    verifyNoMoreInteractions(mStore);
+
+    flush.run();
+    verify(mStore).transaction(any(Runnable.class));
+    verify(mStore).setConsumerScore("c1", newScore);
+    verify(mStore).setConsumerCurrentLayers("c1", 2, 1);
+    verify(mStore).setProducerScore("p1", producerScore);
+    verifyNoMoreInteractions(mStore);
+  }
+
+  @Test
+  public void updateAfterFlushOpensNewWindow() {
+    JSONArray score = new JSONArray().put(5);
+    mCoalescer.start(mHandler, WINDOW_MS);
+    mCoalescer.setConsumerScore("c1", score);
+    postedFlush(1).run();
+
+    mCoalescer.setConsumerScore("c2", score);
+    postedFlush(2).run();
+    verify(mStore, times(2)).transaction(any(Runnable.class));
+    verify(mStore).setConsumerScore("c1", score);
+    verify(mStore).setConsumerScore("c2", score);
+  }
+
+  @Test
+  public void clearDropsPendingUpdates() {
+    mCoalescer.start(mHandler, WINDOW_MS);
+    mCoalescer.setConsumerCurrentLayers("c1", 1, 1);
+    Runnable flush = postedFlush(1);
+
+    mCoalescer.clear();
+    verify(mHandler).removeCallbacks(flush);
+    // A flush already running when cleared has nothing left to apply.
+    flush.run();
+    verify(mStore, never()).transaction(any(Runnable.class));
+    verify(mStore, never()).setConsumerCurrentLayers("c1", 1, 1);
+  }
+}
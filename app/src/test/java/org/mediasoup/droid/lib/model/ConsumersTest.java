@@ -0,0 +1,111 @@
+package org.mediasoup.droid.lib.model;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.mediasoup.droid.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConsumersTest {
+
+  private static Consumer consumer(String id, String kind) {
+    Consumer consumer = mock(Consumer.class);
+    when(consumer.getId()).thenReturn(id);
+    when(consumer.getKind()).thenReturn(kind);
+    return consumer;
+  }
+
+  private static Consumers add(Consumers consumers, String peerId, String id, String kind) {
+    return consumers.addConsumer(peerId, "simple", consumer(id, kind), false);
+  }
+
+  @Test
+  public void indexByPeerAndKind() {
+    Consumers consumers = new Consumers();
+    consumers = add(consumers, "p1", "a1", "audio");
+    consumers = add(consumers, "p1", "v1", "video");
+    consumers = add(consumers, "p2", "v2", "video");
+
+    assertEquals("a1", consumers.getConsumer("p1", "audio").getConsumer().getId());
+    assertEquals("v1", consumers.getConsumer("p1", "video").getConsumer().getId());
+    assertEquals("v2", consumers.getConsumer("p2", "video").getConsumer().getId());
+    assertNull(consumers.getConsumer("p2", "audio"));
+    assertNull(consumers.getConsumer("p3", "video"));
+  }
+
+  @Test
+  public void removalDropsIndexEntry() {
+    Consumers consumers = new Consumers();
+    consumers = add(consumers, "p1", "a1", "audio");
+    consumers = add(consumers, "p1", "v1", "video");
+
+    consumers = consumers.removeConsumer("v1");
+    assertNull(consumers.getConsumer("v1"));
+    assertNull(consumers.getConsumer("p1", "video"));
+    assertNotNull(consumers.getConsumer("p1", "audio"));
+
+    consumers = consumers.removeConsumer("a1");
+    assertNull(consumers.getConsumer("p1", "audio"));
+  }
+
+  @Test
+  public void removalFallsBackToSamePeerAndKind() {
+    Consumers consumers = new Consumers();
+    consumers = add(consumers, "p1", "v1", "video");
+    consumers = add(consumers, "p2", "v2", "video");
+    consumers = add(consumers, "p1", "v3", "video");
+    assertEquals("v3", consumers.getConsumer("p1", "video").getConsumer().getId());
+
+    consumers = consumers.removeConsumer("v3");
+    assertEquals("v1", consumers.getConsumer("p1", "video").getConsumer().getId());
+    assertEquals("v2", consumers.getConsumer("p2", "video").getConsumer().getId());
+  }
+
+  @Test
+  public void removalOfUnindexedConsumerKeepsIndex() {
+    Consumers consumers = new Consumers();
+    consumers = add(consumers, "p1", "v1", "video");
+    consumers = add(consumers, "p1", "v2", "video");
+
+    consumers = consumers.removeConsumer("v1");
+    assertEquals("v2", consumers.getConsumer("p1", "video").getConsumer().getId());
+  }
+
+  @Test
+  public void removalOfUnknownConsumerIsNoop() {
+    Consumers consumers = add(new Consumers(), "p1", "v1", "video");
+    assertSame(consumers, consumers.removeConsumer("v2"));
+  }
+
+  @Test
+  public void updatesKeepOtherWrappersAndIndex() {
+    Consumers consumers = new Consumers();
+    // Enough Consumers to spread over the partitions.
+    for (int i = 0; i < 100; i++) {
+      consumers = add(consumers, "p" + i, "c" + i, "video");
+    }
+    Consumers updated = consumers.setConsumerScore("c7", new JSONArray().put(10));
+
+    assertEquals(10, updated.getConsumer("c7").getScore().optInt(0));
+    assertNull(consumers.getConsumer("c7").getScore());
+    for (int i = 0; i < 100; i++) {
+      if (i != 7) {
+        assertSame(consumers.getConsumer("c" + i), updated.getConsumer("c" + i));
+      }
+      assertSame(updated.getConsumer("c" + i), updated.getConsumer("p" + i, "video"));
+    }
+
+    for (int i = 0; i < 100; i += 2) {
+      updated = updated.removeConsumer("c" + i);
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 2 == 0, updated.getConsumer("p" + i, "video") == null);
+      assertEquals(i % 2 == 0, updated.getConsumer("c" + i) == null);
+    }
+  }
+}
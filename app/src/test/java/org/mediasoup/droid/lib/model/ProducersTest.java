@@ -0,0 +1,81 @@
+package org.mediasoup.droid.lib.model;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.mediasoup.droid.Producer;
+import org.webrtc.MediaStreamTrack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProducersTest {
+
+  private static Producer producer(String id, String kind) {
+    MediaStreamTrack track = mock(MediaStreamTrack.class);
+    when(track.kind()).thenReturn(kind);
+    Producer producer = mock(Producer.class);
+    when(producer.getId()).thenReturn(id);
+    when(producer.getTrack()).thenReturn(track);
+    return producer;
+  }
+
+  private static String idOf(Producers.ProducersWrapper wrapper) {
+    return wrapper.getProducer().getId();
+  }
+
+  @Test
+  public void indexByKind() {
+    Producers producers = new Producers();
+    producers = producers.addProducer(producer("a1", "audio"));
+    producers = producers.addProducer(producer("v1", "video"));
+
+    assertEquals("a1", idOf(producers.filter("audio")));
+    assertEquals("v1", idOf(producers.filter("video")));
+  }
+
+  @Test
+  public void removalDropsIndexEntry() {
+    Producers producers = new Producers();
+    producers = producers.addProducer(producer("a1", "audio"));
+    producers = producers.addProducer(producer("v1", "video"));
+
+    producers = producers.removeProducer("v1");
+    assertNull(producers.filter("video"));
+    assertEquals("a1", idOf(producers.filter("audio")));
+
+    producers = producers.removeProducer("a1");
+    assertNull(producers.filter("audio"));
+  }
+
+  @Test
+  public void removalFallsBackToSameKind() {
+    Producers producers = new Producers();
+    producers = producers.addProducer(producer("v1", "video"));
+    producers = producers.addProducer(producer("v2", "video"));
+    assertEquals("v2", idOf(producers.filter("video")));
+
+    producers = producers.removeProducer("v2");
+    assertEquals("v1", idOf(producers.filter("video")));
+  }
+
+  @Test
+  public void removalOfUnknownProducerIsNoop() {
+    Producers producers = new Producers().addProducer(producer("v1", "video"));
+    assertSame(producers, producers.removeProducer("v2"));
+  }
+
+  @Test
+  public void scoreUpdateKeepsIndex() {
+    Producers producers = new Producers();
+    producers = producers.addProducer(producer("a1", "audio"));
+    producers = producers.addProducer(producer("v1", "video"));
+    Producers.ProducersWrapper audio = producers.filter("audio");
+
+    producers = producers.setProducerScore("v1", new JSONArray().put(10));
+    assertEquals(10, producers.filter("video").getScore().optInt(0));
+    assertSame(audio, producers.filter("audio"));
+  }
+}
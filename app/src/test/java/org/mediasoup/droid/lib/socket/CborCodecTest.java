@@ -0,0 +1,127 @@
+package org.mediasoup.droid.lib.socket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CborCodecTest {
+
+  private static JSONObject message() throws Exception {
+    return new JSONObject()
+        .put("request", true)
+        .put("id", 1234567)
+        .put("method", "setConsumerPreferredLayers")
+        .put(
+            "data",
+            new JSONObject()
+                .put("consumerId", "c-\u00e9\"\\")
+                .put("spatialLayer", -2)
+                .put("score", 0.5)
+                .put("layers", new JSONArray().put(1).put(JSONObject.NULL).put(false)));
+  }
+
+  private static byte[] frame(int... bytes) {
+    byte[] frame = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      frame[i] = (byte) bytes[i];
+    }
+    return frame;
+  }
+
+  private static String decode(byte[] frame) throws CborCodec.CborException {
+    return CborCodec.decodeToJson(ByteBuffer.wrap(frame));
+  }
+
+  private static void assertRejected(byte[] frame) {
+    try {
+      String json = decode(frame);
+      fail("decoded " + Arrays.toString(frame) + " to " + json);
+    } catch (CborCodec.CborException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    JSONObject message = message();
+    byte[] frame = CborCodec.encode(message).toByteArray();
+    assertEquals(message.toString(), new JSONObject(decode(frame)).toString());
+  }
+
+  @Test
+  public void truncatedFrames() throws Exception {
+    byte[] frame = CborCodec.encode(message()).toByteArray();
+    for (int length = 0; length < frame.length; length++) {
+      assertRejected(Arrays.copyOf(frame, length));
+    }
+  }
+
+  @Test
+  public void trailingBytes() throws Exception {
+    byte[] frame = CborCodec.encode(message()).toByteArray();
+    assertRejected(Arrays.copyOf(frame, frame.length + 1));
+  }
+
+  @Test
+  public void notAMap() {
+    // [1]
+    assertRejected(frame(0x81, 0x01));
+  }
+
+  @Test
+  public void countPastFrame() {
+    // Map of 2^32 - 1 entries, array of 2^16 - 1 items.
+    assertRejected(frame(0xba, 0xff, 0xff, 0xff, 0xff));
+    assertRejected(frame(0xa1, 0x61, 'a', 0x99, 0xff, 0xff));
+  }
+
+  @Test
+  public void textLengthPastFrame() {
+    // {"a": text of 2^32 - 1 bytes}
+    assertRejected(frame(0xa1, 0x61, 'a', 0x7a, 0xff, 0xff, 0xff, 0xff, 'b'));
+  }
+
+  @Test
+  public void negativeLongArgument() {
+    // {"a": text of 2^63 bytes}, which does not fit a long.
+    assertRejected(frame(0xa1, 0x61, 'a', 0x7b, 0x80, 0, 0, 0, 0, 0, 0, 0));
+  }
+
+  @Test
+  public void nestingTooDeep() {
+    byte[] frame = new byte[100];
+    frame[0] = (byte) 0xa1;
+    frame[1] = (byte) 0x61;
+    frame[2] = (byte) 'a';
+    Arrays.fill(frame, 3, frame.length, (byte) 0x81);
+    assertRejected(frame);
+  }
+
+  @Test
+  public void nonFiniteNumber() {
+    // {"a": NaN} as a half float.
+    assertRejected(frame(0xa1, 0x61, 'a', 0xf9, 0x7e, 0));
+  }
+
+  @Test
+  public void indefiniteIntegerOrTag() {
+    // {"a": x} with x an unsigned, negative or tag head of additional info 31.
+    assertRejected(frame(0xa1, 0x61, 'a', 0x1f));
+    assertRejected(frame(0xa1, 0x61, 'a', 0x3f));
+    assertRejected(frame(0xa1, 0x61, 'a', 0xdf, 0x01));
+  }
+
+  @Test
+  public void indefiniteLengths() throws Exception {
+    // {_ "a": [_ 1, "b" "c"]} with "bc" as two chunks.
+    String json =
+        decode(frame(0xbf, 0x61, 'a', 0x9f, 0x01, 0x7f, 0x61, 'b', 0x61, 'c', 0xff, 0xff, 0xff));
+    assertEquals("{\"a\":[1,\"bc\"]}", json);
+  }
+}
@@ -0,0 +1,112 @@
+package org.mediasoup.droid.lib.socket;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SendQueueTest {
+
+  private static SendQueue.Entry request(long id, String method, String consumerId)
+      throws Exception {
+    JSONObject message =
+        new JSONObject()
+            .put("request", true)
+            .put("id", id)
+            .put("method", method)
+            .put("data", new JSONObject().put("consumerId", consumerId));
+    return new SendQueue.Entry(message, message.toString());
+  }
+
+  private static long pollId(SendQueue queue) {
+    long id = queue.peek().id;
+    queue.poll();
+    return id;
+  }
+
+  @Test
+  public void keepsOrder() throws Exception {
+    SendQueue queue = new SendQueue();
+    queue.offer(request(1, "pauseConsumer", "a"));
+    queue.offer(request(2, "pauseConsumer", "b"));
+    queue.offer(request(3, "getTransportStats", "a"));
+
+    assertEquals(3, queue.size());
+    assertEquals(1, pollId(queue));
+    assertEquals(2, pollId(queue));
+    assertEquals(3, pollId(queue));
+    assertNull(queue.peek());
+  }
+
+  @Test
+  public void coalescedRequestMovesToTheEnd() throws Exception {
+    SendQueue queue = new SendQueue();
+    SendQueue.Entry first = request(1, "setConsumerPreferredLayers", "a");
+    queue.offer(first);
+    queue.offer(request(2, "pauseConsumer", "b"));
+    SendQueue.Entry third = request(3, "setConsumerPreferredLayers", "a");
+
+    assertSame(first, queue.offer(third));
+    assertEquals(2, queue.size());
+    assertEquals(1, queue.getCoalescedCount());
+    assertEquals(Collections.singletonList(1L), third.supersededIds);
+    // Sent after the requests queued before it, not in place of the superseded one.
+    assertEquals(2, pollId(queue));
+    assertEquals(3, pollId(queue));
+  }
+
+  @Test
+  public void supersededIdsAccumulate() throws Exception {
+    SendQueue queue = new SendQueue();
+    queue.offer(request(1, "setConsumerPriority", "a"));
+    queue.offer(request(2, "setConsumerPriority", "a"));
+    SendQueue.Entry last = request(3, "setConsumerPriority", "a");
+    queue.offer(last);
+
+    assertEquals(1, queue.size());
+    assertEquals(Arrays.asList(1L, 2L), last.supersededIds);
+  }
+
+  @Test
+  public void onlySameMethodAndTargetCoalesce() throws Exception {
+    SendQueue queue = new SendQueue();
+    queue.offer(request(1, "pauseConsumer", "a"));
+
+    assertNull(queue.offer(request(2, "resumeConsumer", "a")));
+    assertNull(queue.offer(request(3, "pauseConsumer", "b")));
+    assertNull(queue.offer(request(4, "getConsumerStats", "a")));
+    assertNull(queue.offer(request(5, "getConsumerStats", "a")));
+    assertEquals(5, queue.size());
+    assertEquals(0, queue.getCoalescedCount());
+  }
+
+  @Test
+  public void removeDropsOnlyThatRequest() throws Exception {
+    SendQueue queue = new SendQueue();
+    queue.offer(request(1, "pauseConsumer", "a"));
+    queue.offer(request(2, "pauseConsumer", "b"));
+
+    assertTrue(queue.remove(1));
+    assertFalse(queue.remove(1));
+    assertEquals(1, queue.size());
+    assertEquals(2, pollId(queue));
+  }
+
+  @Test
+  public void clear() throws Exception {
+    SendQueue queue = new SendQueue();
+    queue.offer(request(1, "pauseConsumer", "a"));
+    queue.offer(request(2, "pauseConsumer", "b"));
+
+    assertEquals(2, queue.clear());
+    assertEquals(0, queue.size());
+    assertNull(queue.peek());
+  }
+}